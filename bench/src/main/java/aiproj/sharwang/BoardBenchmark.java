@@ -0,0 +1,117 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  BoardBenchmark:
+ *    Throughput of the board operations the search runs at every node, on
+ *    seeded positions. Moves are made and taken back, so each invocation
+ *    starts from the same board. updateBoard and updateScore are measured
+ *    through makeMove: a quiet move is mostly the score update, a capturing
+ *    move adds the capture of a region.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark implements Piece {
+	@Param({"6", "7", "8"})
+	public int dim;
+
+	/* A board a third into the game, and a move on it which captures nothing. */
+	private Board board;
+	private Move quiet;
+
+	/* A board with a capturing move for the player to move, and that move. */
+	private Board captureBoard;
+	private Move capture;
+
+	/* A search of the board, for the evaluation function. */
+	private Search search;
+
+	@Setup
+	public void setup() {
+		board = Positions.board(dim, 1);
+		int player = Positions.toMove(dim * dim / 3);
+		quiet = new Move();
+		long empty = board.getEmptyCells();
+		while(empty != 0) {
+			int cell = Long.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			if(!board.isCaptureMove(cell / dim, cell % dim, player)) {
+				quiet.P = player;
+				quiet.Row = cell / dim;
+				quiet.Col = cell % dim;
+				break;
+			}
+		}
+		capture = new Move();
+		captureBoard = Positions.captureBoard(dim, capture);
+		search = new Search(board, player, new TranspositionTable(1024, TranspositionTable.REPLACE_DEPTH));
+		search.setWeights(new double[] {0.846929, -0.002112, 0.002232});
+	}
+
+	/* Make and take back a move which captures nothing. */
+	@Benchmark
+	public long makeMoveQuiet() {
+		board.makeMove(quiet);
+		long hash = board.getHash();
+		board.unmakeMove();
+		return hash;
+	}
+
+	/* Make and take back a move which captures a region. */
+	@Benchmark
+	public long makeMoveCapture() {
+		captureBoard.makeMove(capture);
+		long hash = captureBoard.getHash();
+		captureBoard.unmakeMove();
+		return hash;
+	}
+
+	/* Copy a board. */
+	@Benchmark
+	public Board copy() {
+		return new Board(board);
+	}
+
+	/* Test every empty cell for a capture, like the move ordering does at every node. */
+	@Benchmark
+	public int captureDetection() {
+		int captures = 0;
+		long empty = board.getEmptyCells();
+		while(empty != 0) {
+			int cell = Long.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			if(board.isCaptureMove(cell / dim, cell % dim, quiet.P))
+				captures++;
+		}
+		return captures;
+	}
+
+	/* The evaluation function of a leaf. */
+	@Benchmark
+	public double getEval() {
+		return search.evaluate();
+	}
+}
@@ -0,0 +1,99 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Positions:
+ *    Seeded random positions of the benchmarks, the same in every run.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+final class Positions implements Piece {
+	private Positions() {
+	}
+
+	/**
+	 * Random moves of both players from an empty board, white first.
+	 *
+	 * @param dim     the dimension of the board
+	 * @param pieces  the number of moves
+	 * @param seed    the seed of the moves
+	 * @return        the moves
+	 */
+	static List<Move> moves(int dim, int pieces, long seed) {
+		Random random = new Random(dim * 1000L + seed);
+		Board b = new Board(dim);
+		List<Move> moves = new ArrayList<>();
+		while(moves.size() < pieces && !b.isComplete()) {
+			Move m = new Move();
+			m.P = moves.size() % 2 == 0 ? WHITE : BLACK;
+			do {
+				m.Row = random.nextInt(dim);
+				m.Col = random.nextInt(dim);
+			} while(!b.makeMove(m));
+			moves.add(m);
+		}
+		return moves;
+	}
+
+	/**
+	 * A board about a third into the game.
+	 *
+	 * @param dim   the dimension of the board
+	 * @param seed  the seed of the moves
+	 * @return      the board
+	 */
+	static Board board(int dim, long seed) {
+		Board b = new Board(dim);
+		for(Move m : moves(dim, dim * dim / 3, seed))
+			b.makeMove(m);
+		return b;
+	}
+
+	/**
+	 * The player to move after a number of moves.
+	 *
+	 * @param moves  the number of moves made
+	 * @return       the player ID
+	 */
+	static int toMove(int moves) {
+		return moves % 2 == 0 ? WHITE : BLACK;
+	}
+
+	/**
+	 * A seeded board on which the player to move has a capturing move, and that move.
+	 * Boards are played further until one has a capture, so the search is deterministic.
+	 *
+	 * @param dim   the dimension of the board
+	 * @param move  the move to fill in with the capturing move
+	 * @return      the board
+	 */
+	static Board captureBoard(int dim, Move move) {
+		for(long seed = 0; ; seed++) {
+			List<Move> moves = moves(dim, dim * dim, seed);
+			Board b = new Board(dim);
+			for(Move m : moves) {
+				int player = m.P;
+				long empty = b.getEmptyCells();
+				while(empty != 0) {
+					int cell = Long.numberOfTrailingZeros(empty);
+					empty &= empty - 1;
+					if(b.isCaptureMove(cell / dim, cell % dim, player)) {
+						move.P = player;
+						move.Row = cell / dim;
+						move.Col = cell % dim;
+						return b;
+					}
+				}
+				b.makeMove(m);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  SearchBenchmark:
+ *    Time of a full search of a move to a fixed depth, on a seeded position
+ *    a third into the game. The transposition table, the killer moves and
+ *    the history are emptied before each search, so every invocation does
+ *    the same work. The forks run with the Vector API, so batch=true scores
+ *    the leaves with VectorLeafScorer.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SearchBenchmark {
+	@Param({"6", "7", "8"})
+	public int dim;
+
+	@Param({"2", "3", "4", "5"})
+	public int depth;
+
+	/* Whether the leaves are scored as a batch, see LeafBatch. */
+	@Param({"false", "true"})
+	public boolean batch;
+
+	/* The player at the position. */
+	private SharWang player;
+
+	@Setup
+	public void setup() {
+		List<Move> moves = Positions.moves(dim, dim * dim / 3, 1);
+		player = new SharWang();
+		player.setBook(null);
+		player.init(dim, Positions.toMove(moves.size()));
+		for(Move m : moves)
+			player.play(m);
+		player.setMaxDepth(depth);
+		player.setBatchEval(batch);
+		player.setMoveTime(Long.MAX_VALUE / 2000000L);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearSearch() {
+		player.clearSearch();
+	}
+
+	/* Iterative deepening to the depth, the search of SharWang.makeMove(). */
+	@Benchmark
+	public Move smartMove() {
+		return player.searchMove();
+	}
+}
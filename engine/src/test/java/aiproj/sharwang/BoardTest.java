@@ -0,0 +1,159 @@
+package aiproj.sharwang;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ *  BoardTest:
+ *    Plays seeded random games on Board and on ReferenceBoard side by side,
+ *    and after every move checks the cells, the scores, the hashes and,
+ *    at the end, the winner. Before each move of the games a few random
+ *    moves are made and unmade again, and the board must be the same after
+ *    every unmake as it was before the matching make.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+class BoardTest implements Piece {
+	/* The number of games, and the most moves made and unmade before each move. */
+	private static final int GAMES = 400, PROBES = 3;
+
+	@Test
+	void gamesMatchReferenceBoard() {
+		Random random = new Random(42);
+		for(int game = 0; game < GAMES; game++) {
+			int dim = 3 + random.nextInt(Board.MAX_DIM - 2);
+			Board board = new Board(dim), transposed = new Board(dim);
+			ReferenceBoard reference = new ReferenceBoard(dim);
+			String where = "game " + game + ", dim " + dim;
+			for(int player = WHITE; !reference.isComplete(); player = Search.changePlayer(player)) {
+				probe(board, random, where);
+				Move m = randomMove(board, player, random);
+				boolean predicted = board.isCaptureMove(m.Row, m.Col, m.P);
+				int own = ownScore(reference, player);
+				assertTrue(board.makeMove(m), where);
+				assertTrue(reference.makeMove(m), where);
+				transposed.makeMove(transpose(board, m));
+				where = "game " + game + ", dim " + dim + ", move " + m.Row + " " + m.Col + "\n" + board;
+				if(ownScore(reference, player) > own)
+					assertTrue(predicted, "capture not predicted, " + where);
+				assertSameBoard(reference, board, where);
+				assertHashes(board, where);
+				assertEquals(transposed.getHash(), board.getHash(Board.TRANSPOSE), "transposed hash, " + where);
+			}
+			assertEquals(reference.getWinner(), board.getWinner(), "winner, " + where);
+		}
+	}
+
+	@Test
+	void unmakeWithoutMoveThrows() {
+		Board board = new Board(4);
+		Move m = new Move();
+		m.P = WHITE;
+		m.Row = 1;
+		m.Col = 2;
+		board.makeMove(m);
+		Board copy = new Board(board);
+		board.unmakeMove();
+		assertThrows(IllegalStateException.class, board::unmakeMove);
+		assertThrows(IllegalStateException.class, copy::unmakeMove);
+	}
+
+	/* Make up to PROBES random moves of either player and unmake them, checking
+	   the board after each unmake against a snapshot taken before the make. */
+	private static void probe(Board board, Random random, String where) {
+		int n = Math.min(PROBES, board.getNumEmpty());
+		String[] before = new String[n];
+		int made = 0;
+		for(int i = 0; i < n && !board.isComplete(); i++) {
+			before[made] = snapshot(board);
+			if(board.makeMove(randomMove(board, 1 + random.nextInt(2), random))) {
+				assertHashes(board, where);
+				made++;
+			}
+		}
+		while(made > 0) {
+			board.unmakeMove();
+			made--;
+			assertEquals(before[made], snapshot(board), "unmake, " + where);
+			assertHashes(board, where);
+		}
+	}
+
+	/* A move of a player to a random empty cell. */
+	private static Move randomMove(Board board, int player, Random random) {
+		long empty = board.getEmptyCells();
+		for(int k = random.nextInt(Long.bitCount(empty)); k > 0; k--)
+			empty &= empty - 1;
+		int cell = Long.numberOfTrailingZeros(empty);
+		Move m = new Move();
+		m.P = player;
+		m.Row = cell / board.getDim();
+		m.Col = cell % board.getDim();
+		return m;
+	}
+
+	/* The move mapped by the transpose. */
+	private static Move transpose(Board board, Move m) {
+		int cell = board.mapCell(m.Row * board.getDim() + m.Col, Board.TRANSPOSE);
+		Move t = new Move();
+		t.P = m.P;
+		t.Row = cell / board.getDim();
+		t.Col = cell % board.getDim();
+		return t;
+	}
+
+	private static int ownScore(ReferenceBoard reference, int player) {
+		return player == WHITE ? reference.getWhiteScore() : reference.getBlackScore();
+	}
+
+	/* Check every cell and score of a board against the reference. */
+	private static void assertSameBoard(ReferenceBoard reference, Board board, String where) {
+		int dim = board.getDim();
+		for(int row = 0; row < dim; row++) {
+			for(int col = 0; col < dim; col++) {
+				String cell = "cell " + row + " " + col + ", " + where;
+				assertEquals(reference.getToken(row, col), board.getCell(row, col).getToken(), cell);
+				assertEquals(reference.getPlayer(row, col), board.getPlayer(row, col), cell);
+			}
+		}
+		assertEquals(reference.getWhiteScore(), board.getWhiteScore(), "white score, " + where);
+		assertEquals(reference.getBlackScore(), board.getBlackScore(), "black score, " + where);
+		assertEquals(reference.getWhitePScore(), board.getWhitePScore(), "white potential score, " + where);
+		assertEquals(reference.getBlackPScore(), board.getBlackPScore(), "black potential score, " + where);
+		assertEquals(reference.getWhiteSideScore(), board.getWhiteSideScore(), "white side score, " + where);
+		assertEquals(reference.getBlackSideScore(), board.getBlackSideScore(), "black side score, " + where);
+		assertEquals(reference.isComplete(), board.isComplete(), "complete, " + where);
+	}
+
+	/* Check the incremental hashes against hashes computed from the planes. */
+	private static void assertHashes(Board board, String where) {
+		for(int s = 0; s < Board.SYMMETRIES; s++)
+			assertEquals(board.computeHash(s), board.getHash(s), "hash under symmetry " + s + ", " + where);
+	}
+
+	/* Everything a move can change, as a string. */
+	private static String snapshot(Board board) {
+		StringBuilder sb = new StringBuilder(board.toString());
+		for(int row = 0; row < board.getDim(); row++) {
+			for(int col = 0; col < board.getDim(); col++)
+				sb.append(board.getPlayer(row, col));
+		}
+		sb.append(' ').append(board.getWhiteScore()).append(' ').append(board.getBlackScore())
+				.append(' ').append(board.getWhitePScore()).append(' ').append(board.getBlackPScore())
+				.append(' ').append(board.getWhiteSideScore()).append(' ').append(board.getBlackSideScore())
+				.append(' ').append(board.getNumEmpty()).append(' ').append(board.isComplete())
+				.append(' ').append(board.getWinner());
+		for(int s = 0; s < Board.SYMMETRIES; s++)
+			sb.append(' ').append(board.getHash(s));
+		return sb.toString();
+	}
+}
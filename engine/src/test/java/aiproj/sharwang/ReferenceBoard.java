@@ -0,0 +1,263 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  ReferenceBoard:
+ *    The rules of the game as the first board implemented them, a grid of
+ *    tokens and owners searched cell by cell and rescored from scratch after
+ *    every move. It is slow and simple, and BoardTest checks Board against it.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+final class ReferenceBoard implements Piece {
+	/* The dimension of the board. */
+	private final int dim;
+
+	/* The token and the owner of each cell. */
+	private final String[][] tokens;
+	private final int[][] owners;
+
+	/* The capture, potential and side scores of white and black. */
+	private int whiteScore, blackScore, whitePScore, blackPScore, whiteSideScore, blackSideScore;
+
+	/**
+	 * Create an empty board.
+	 *
+	 * @param dim  the dimension of the board
+	 */
+	ReferenceBoard(int dim) {
+		this.dim = dim;
+		tokens = new String[dim][dim];
+		owners = new int[dim][dim];
+		for(int row = 0; row < dim; row++) {
+			for(int col = 0; col < dim; col++) {
+				tokens[row][col] = Board.TOKEN_EMPTY;
+				owners[row][col] = Board.PLAYER_NONE;
+			}
+		}
+	}
+
+	String getToken(int row, int col) {
+		return tokens[row][col];
+	}
+
+	int getPlayer(int row, int col) {
+		return owners[row][col];
+	}
+
+	int getWhiteScore() {
+		return whiteScore;
+	}
+
+	int getBlackScore() {
+		return blackScore;
+	}
+
+	int getWhitePScore() {
+		return whitePScore;
+	}
+
+	int getBlackPScore() {
+		return blackPScore;
+	}
+
+	int getWhiteSideScore() {
+		return whiteSideScore;
+	}
+
+	int getBlackSideScore() {
+		return blackSideScore;
+	}
+
+	boolean isComplete() {
+		for(String[] row : tokens) {
+			for(String token : row) {
+				if(token.equals(Board.TOKEN_EMPTY))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	int getWinner() {
+		if(!isComplete())
+			return EMPTY;
+		if(whiteScore > blackScore)
+			return WHITE;
+		if(whiteScore < blackScore)
+			return BLACK;
+		return DEAD;
+	}
+
+	/**
+	 * Make a move.
+	 *
+	 * @param m  the move
+	 * @return   true if the move is valid, otherwise false
+	 */
+	boolean makeMove(Move m) {
+		if(!tokens[m.Row][m.Col].equals(Board.TOKEN_EMPTY))
+			return false;
+		String token = m.P == WHITE ? Board.TOKEN_WHITE : Board.TOKEN_BLACK;
+		tokens[m.Row][m.Col] = token;
+		captureRegions(m, token);
+		captureSelf(token);
+		score();
+		return true;
+	}
+
+	/* Flood fill the regions of cells next to the move, not holding the token of
+	   the player. A region is captured if every cell of it has the token of the
+	   player in all four directions. Cells are visited once per move. */
+	private void captureRegions(Move m, String token) {
+		List<int[]> visited = new ArrayList<>(), neighbours = new ArrayList<>();
+		addNeighbours(m.Row, m.Col, token, neighbours);
+		while(!neighbours.isEmpty()) {
+			List<int[]> unvisited = new ArrayList<>(), region = new ArrayList<>();
+			boolean enclosed = true;
+			unvisited.add(neighbours.remove(0));
+			while(!unvisited.isEmpty()) {
+				int[] cell = unvisited.remove(0);
+				if(contains(visited, cell))
+					continue;
+				visited.add(cell);
+				if(boundaries(cell[0], cell[1], token) == 4)
+					region.add(cell);
+				else
+					enclosed = false;
+				addNeighbours(cell[0], cell[1], token, unvisited);
+			}
+			if(enclosed) {
+				for(int[] cell : region)
+					capture(cell[0], cell[1], m.P);
+			}
+		}
+	}
+
+	/* Add the orthogonal neighbours of a cell not holding a token to a list. */
+	private void addNeighbours(int row, int col, String token, List<int[]> list) {
+		if(col > 0 && !tokens[row][col-1].equals(token))
+			list.add(new int[] {row, col-1});
+		if(col < dim - 1 && !tokens[row][col+1].equals(token))
+			list.add(new int[] {row, col+1});
+		if(row > 0 && !tokens[row-1][col].equals(token))
+			list.add(new int[] {row-1, col});
+		if(row < dim - 1 && !tokens[row+1][col].equals(token))
+			list.add(new int[] {row+1, col});
+	}
+
+	private static boolean contains(List<int[]> list, int[] cell) {
+		for(int[] c : list) {
+			if(c[0] == cell[0] && c[1] == cell[1])
+				return true;
+		}
+		return false;
+	}
+
+	/* The number of directions from a cell in which a token lies. */
+	private int boundaries(int row, int col, String token) {
+		int found = 0;
+		for(int i = 0; i < col; i++) {
+			if(tokens[row][i].equals(token)) {
+				found++;
+				break;
+			}
+		}
+		for(int i = col + 1; i < dim; i++) {
+			if(tokens[row][i].equals(token)) {
+				found++;
+				break;
+			}
+		}
+		for(int i = 0; i < row; i++) {
+			if(tokens[i][col].equals(token)) {
+				found++;
+				break;
+			}
+		}
+		for(int i = row + 1; i < dim; i++) {
+			if(tokens[i][col].equals(token)) {
+				found++;
+				break;
+			}
+		}
+		return found;
+	}
+
+	/* Capture a cell for a player, or for no one. */
+	private void capture(int row, int col, int player) {
+		if(tokens[row][col].equals(Board.TOKEN_EMPTY))
+			tokens[row][col] = Board.TOKEN_EMPTY_CAPTURED;
+		else if(tokens[row][col].equals(Board.TOKEN_WHITE))
+			tokens[row][col] = Board.TOKEN_WHITE_CAPTURED;
+		else if(tokens[row][col].equals(Board.TOKEN_BLACK))
+			tokens[row][col] = Board.TOKEN_BLACK_CAPTURED;
+		owners[row][col] = player;
+	}
+
+	/* Capture, for no one, the live tokens of the player off the sides without
+	   an empty or live opponent neighbour and not surrounded by their own live
+	   tokens, in row-major order. */
+	private void captureSelf(String token) {
+		String opponent = token.equals(Board.TOKEN_WHITE) ? Board.TOKEN_BLACK : Board.TOKEN_WHITE;
+		for(int row = 1; row < dim - 1; row++) {
+			for(int col = 1; col < dim - 1; col++) {
+				if(!tokens[row][col].equals(token))
+					continue;
+				String[] around = {tokens[row][col-1], tokens[row][col+1], tokens[row-1][col], tokens[row+1][col]};
+				boolean blocked = false;
+				int own = 0;
+				for(String t : around) {
+					if(t.equals(opponent) || t.equals(Board.TOKEN_EMPTY))
+						blocked = true;
+					if(t.equals(token))
+						own++;
+				}
+				if(!blocked && own < 4)
+					capture(row, col, Board.PLAYER_NONE);
+			}
+		}
+	}
+
+	/* Rescore the whole board. */
+	private void score() {
+		whiteScore = blackScore = whitePScore = blackPScore = whiteSideScore = blackSideScore = 0;
+		for(int row = 0; row < dim; row++) {
+			for(int col = 0; col < dim; col++) {
+				boolean side = row == 0 || col == 0 || row == dim - 1 || col == dim - 1;
+				if(owners[row][col] == WHITE)
+					whiteScore++;
+				if(owners[row][col] == BLACK)
+					blackScore++;
+				if(tokens[row][col].equals(Board.TOKEN_WHITE)) {
+					whitePScore += potential(row, col, Board.TOKEN_WHITE);
+					if(side)
+						whiteSideScore++;
+				}
+				if(tokens[row][col].equals(Board.TOKEN_BLACK)) {
+					blackPScore += potential(row, col, Board.TOKEN_BLACK);
+					if(side)
+						blackSideScore++;
+				}
+			}
+		}
+	}
+
+	/* The potential score of a token: 1 + 2 + ... + k for k diagonal tokens of its own. */
+	private int potential(int row, int col, String token) {
+		int score = 0, k = 1;
+		int[][] diagonals = {{row-1, col-1}, {row-1, col+1}, {row+1, col-1}, {row+1, col+1}};
+		for(int[] d : diagonals) {
+			if(d[0] >= 0 && d[0] < dim && d[1] >= 0 && d[1] < dim && tokens[d[0]][d[1]].equals(token))
+				score += k++;
+		}
+		return score;
+	}
+}
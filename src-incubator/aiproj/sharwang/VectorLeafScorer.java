@@ -0,0 +1,49 @@
+package aiproj.sharwang;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *  VectorLeafScorer:
+ *    Scores the leaves of a LeafBatch with the Vector API, as many leaves
+ *    per instruction as the preferred vector width holds, and the rest with
+ *    a scalar loop. It needs the jdk.incubator.vector module at compile and
+ *    run time, so it is kept out of src and only loaded by
+ *    LeafBatch.bestScorer().
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+final class VectorLeafScorer implements LeafBatch.Scorer {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Score the leaves of a batch into its scores.
+	 *
+	 * @param batch  the batch
+	 * @param w1     the weight of the capture difference
+	 * @param w2     the weight of the side difference
+	 * @param w3     the weight of the potential difference
+	 * @param sign   1 if the maximizing player is white, otherwise -1
+	 */
+	public void score(LeafBatch batch, double w1, double w2, double w3, double sign) {
+		double[] c = batch.captures, s = batch.sides, p = batch.potentials, out = batch.scores;
+		int n = batch.size, i = 0;
+		for(int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+			/* The terms are added in the order of the scalar score, so the results are equal. */
+			DoubleVector eval = DoubleVector.fromArray(SPECIES, c, i).mul(w1);
+			eval = eval.add(DoubleVector.fromArray(SPECIES, s, i).mul(w2));
+			eval = eval.add(DoubleVector.fromArray(SPECIES, p, i).mul(w3));
+			eval.mul(sign).intoArray(out, i);
+		}
+		for(; i < n; i++) {
+			double eval = 0;
+			eval += w1 * c[i];
+			eval += w2 * s[i];
+			eval += w3 * p[i];
+			out[i] = sign * eval;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import aiproj.squatter.Player;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  BatchReferee:
+ *    Plays many games between two players in one JVM, on a bounded pool of
+ *    threads, without printing the boards. The players swap colours every
+ *    game. Reports the wins, draws and losses of the first player, the
+ *    average game length and the time per move of each player.
+ *
+ *    With -Dsharwang.shared=true, the players of each side with a
+ *    constructor taking an Engine share one engine, made from the system
+ *    properties, over all their games, as a host of many games would.
+ *
+ *    Usage: java aiproj.sharwang.BatchReferee dim games player1 player2 [threads]
+ *    e.g.   java -Dsharwang.movetime=100 aiproj.sharwang.BatchReferee 6 1000
+ *               aiproj.sharwang.SharWang aiproj.sharwang.SharWangMcts 4
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class BatchReferee implements Piece {
+	/* The results of the games played so far, and the moves of the finished games, guarded by the referee. */
+	private int wins, draws, losses, errors;
+	private long moves;
+
+	/* The number of moves, total and longest time per move of the first and second player. */
+	private final long[] moveCounts = new long[2], moveNanos = new long[2], maxNanos = new long[2];
+
+	/* The engines shared by the games of the first and second player, null for players of their own. */
+	private final Engine[] engines = new Engine[2];
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		if(args.length < 4) {
+			System.err.println("Usage: java aiproj.sharwang.BatchReferee dim games player1 player2 [threads]");
+			System.exit(1);
+		}
+		int dim = Integer.parseInt(args[0]), games = Integer.parseInt(args[1]);
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		BatchReferee referee = new BatchReferee();
+		if(Boolean.getBoolean("sharwang.shared")) {
+			referee.engines[0] = Engine.fromProperties();
+			referee.engines[1] = Engine.fromProperties();
+		}
+		long start = System.nanoTime();
+		referee.play(dim, games, playerClass(args[2]), playerClass(args[3]), threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		referee.report(args[2], args[3], games, seconds);
+		for(Engine engine : referee.engines) {
+			if(engine != null)
+				engine.close();
+		}
+		System.exit(0);
+	}
+
+	/* Load a player class, exit if it is not a player. */
+	private static Class<? extends Player> playerClass(String name) {
+		try {
+			return Class.forName(name).asSubclass(Player.class);
+		} catch(ClassNotFoundException | ClassCastException e) {
+			System.err.println("Not a player: " + name);
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/* Play the games on a pool of threads, one game per task. */
+	private void play(final int dim, int games, final Class<? extends Player> first,
+			final Class<? extends Player> second, int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<Future<?>> results = new ArrayList<>();
+		for(int i = 0; i < games; i++) {
+			final boolean firstIsWhite = i % 2 == 0;
+			results.add(pool.submit(new Runnable() {
+				public void run() {
+					game(dim, first, second, firstIsWhite);
+				}
+			}));
+		}
+		for(Future<?> result : results) {
+			try {
+				result.get();
+			} catch(ExecutionException e) {
+				synchronized(this) {
+					errors++;
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	/* Play one game between new players, then close the players. */
+	private void game(int dim, Class<? extends Player> first, Class<? extends Player> second, boolean firstIsWhite) {
+		Player[] players = {newPlayer(first, engines[0]), newPlayer(second, engines[1])};
+		try {
+			game(dim, players, firstIsWhite);
+		} finally {
+			for(Player p : players) {
+				if(p instanceof SharWang)
+					((SharWang)p).close();
+			}
+		}
+	}
+
+	/* Play one game like aiproj.squatter.Referee, and count its result. */
+	private void game(int dim, Player[] players, boolean firstIsWhite) {
+		players[0].init(dim, firstIsWhite ? WHITE : BLACK);
+		players[1].init(dim, firstIsWhite ? BLACK : WHITE);
+		/* Index in players of the player to move, white first. */
+		int turn = firstIsWhite ? 0 : 1, played = 0;
+		long[] counts = new long[2], nanos = new long[2], max = new long[2];
+		while(played < dim * dim && players[0].getWinner() == EMPTY && players[1].getWinner() == EMPTY) {
+			long start = System.nanoTime();
+			Move m = players[turn].makeMove();
+			long time = System.nanoTime() - start;
+			counts[turn]++;
+			nanos[turn] += time;
+			max[turn] = Math.max(max[turn], time);
+			played++;
+			if(players[1 - turn].opponentMove(m) < 0) {
+				synchronized(this) {
+					errors++;
+				}
+				return;
+			}
+			turn = 1 - turn;
+		}
+		int winner = players[0].getWinner();
+		synchronized(this) {
+			if(winner != players[1].getWinner())
+				errors++;
+			else if(winner == DEAD)
+				draws++;
+			else if(winner == (firstIsWhite ? WHITE : BLACK))
+				wins++;
+			else if(winner != EMPTY)
+				losses++;
+			else
+				errors++;
+			/* The average game length is over finished games only. */
+			if(winner == players[1].getWinner() && winner != EMPTY)
+				moves += played;
+			for(int i = 0; i < 2; i++) {
+				moveCounts[i] += counts[i];
+				moveNanos[i] += nanos[i];
+				maxNanos[i] = Math.max(maxNanos[i], max[i]);
+			}
+		}
+	}
+
+	/* Create a player, on the engine if it is not null and the player can share one. */
+	private static Player newPlayer(Class<? extends Player> type, Engine engine) {
+		try {
+			if(engine != null) {
+				try {
+					return type.getDeclaredConstructor(Engine.class).newInstance(engine);
+				} catch(NoSuchMethodException e) {
+					/* A player of its own. */
+				}
+			}
+			return type.getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("Can not create a player", e);
+		}
+	}
+
+	/* Print the results. */
+	private synchronized void report(String first, String second, int games, double seconds) {
+		int finished = wins + draws + losses;
+		System.out.printf("%d games in %.1f s (%.1f games/s)%n", games, seconds, games / seconds);
+		System.out.printf("%s against %s: %d wins, %d draws, %d losses (%.1f%% score)%n", first, second,
+				wins, draws, losses, finished == 0 ? 0 : 100.0 * (wins + 0.5 * draws) / finished);
+		if(errors > 0)
+			System.out.println(errors + " games ended by an error or a disagreement on the winner");
+		System.out.printf("average game length: %.1f moves%n", finished == 0 ? 0 : (double)moves / finished);
+		String[] names = {first, second};
+		for(int i = 0; i < 2; i++) {
+			System.out.printf("%s: %.2f ms per move, longest %.2f ms%n", names[i],
+					moveCounts[i] == 0 ? 0 : moveNanos[i] / 1e6 / moveCounts[i], maxNanos[i] / 1e6);
+		}
+	}
+}
@@ -2,7 +2,7 @@ package aiproj.sharwang;
 
 import aiproj.squatter.Move;
 import aiproj.squatter.Piece;
-import java.util.ArrayList;
+import java.util.Random;
 
 /**
  *  Board:
@@ -14,6 +14,9 @@ import java.util.ArrayList;
  */
 
 public class Board implements Piece {
+	/** The largest dimension that fits into the bit planes of a board. */
+	public static final int MAX_DIM = 8;
+
 	/* The dimension of the board */
 	private int dim;
 
@@ -26,8 +29,135 @@ public class Board implements Piece {
 	/* We defined potential scores for white and black. */
     private int whitePScore, blackPScore;
 
-	/* The Board. */
-	private Cell[][] board;
+	/*
+	 * The Board, stored as bit planes. Cell (row, col) is the bit at
+	 * index row * dim + col of each plane:
+	 *   white, black  cells holding a white or black piece (captured or not)
+	 *   captured      cells whose token has been captured
+	 *   ownerWhite,   cells owned by white or black, i.e. the player of
+	 *   ownerBlack    the Cell in the old representation
+	 */
+	private long white, black, captured, ownerWhite, ownerBlack;
+
+	/* The mask of all cells on the board, its first and last columns and its sides. */
+	private long cells, firstCol, lastCol, sides;
+
+	/* The number of cells holding TOKEN_EMPTY. */
+	private int numEmpty;
+
+	/* The Zobrist hashes of the board under each symmetry, hashes[IDENTITY] is the hash of the board. */
+	private long[] hashes = new long[SYMMETRIES];
+
+	/* The Zobrist keys of this dimension under each symmetry, see SYMMETRY_KEYS. */
+	private long[][][] symmetryKeys;
+
+	/* The rays of this dimension, see RAYS. */
+	private long[][] rays;
+
+	/*
+	 * RAYS[dim][d][cell] is the mask of the cells left of, right of, above
+	 * and below (d = 0 to 3) a cell on a board of dimension dim, so whether
+	 * a token is in a direction of a cell is a single test against a plane.
+	 */
+	private static final long[][][] RAYS = new long[MAX_DIM + 1][4][];
+	static {
+		for(int dim = 1; dim <= MAX_DIM; dim++) {
+			for(int d = 0; d < 4; d++)
+				RAYS[dim][d] = new long[dim * dim];
+			for(int row = 0; row < dim; row++) {
+				for(int col = 0; col < dim; col++) {
+					int cell = row * dim + col;
+					for(int i = 0; i < col; i++)
+						RAYS[dim][0][cell] |= 1L << (row * dim + i);
+					for(int i = col + 1; i < dim; i++)
+						RAYS[dim][1][cell] |= 1L << (row * dim + i);
+					for(int i = 0; i < row; i++)
+						RAYS[dim][2][cell] |= 1L << (i * dim + col);
+					for(int i = row + 1; i < dim; i++)
+						RAYS[dim][3][cell] |= 1L << (i * dim + col);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Zobrist keys, one per plane and cell, and one per dimension so that
+	 * boards of different sizes never share a hash. A fixed seed keeps the
+	 * hashes the same in every run.
+	 */
+	private static final long[][] ZOBRIST = new long[5][MAX_DIM * MAX_DIM];
+	private static final long[] ZOBRIST_DIM = new long[MAX_DIM + 1];
+	static {
+		Random random = new Random(0x5175A77E4L);
+		for(long[] keys : ZOBRIST) {
+			for(int i = 0; i < keys.length; i++)
+				keys[i] = random.nextLong();
+		}
+		for(int i = 0; i < ZOBRIST_DIM.length; i++)
+			ZOBRIST_DIM[i] = random.nextLong();
+	}
+
+	/** The number of symmetries of the game, see SYMMETRY_CELLS. */
+	public static final int SYMMETRIES = 2;
+
+	/** The symmetry mapping every cell to itself. */
+	public static final int IDENTITY = 0;
+
+	/** The symmetry mapping (row, col) to (col, row), the reflection in the main diagonal. */
+	public static final int TRANSPOSE = 1;
+
+	/*
+	 * SYMMETRY_CELLS[dim][s][cell] is the cell a cell is mapped to by symmetry s
+	 * on a board of dimension dim. Both symmetries are their own inverse.
+	 *
+	 * The other rotations and reflections of the square are not symmetries of
+	 * the game: a move on a rotated board does not always give the rotated
+	 * result. Self captures are found in row-major order, and a token can be
+	 * left alive by an own neighbour which is captured later in the scan, so
+	 * whether the left or the upper neighbour of a cell is scanned first
+	 * matters. The transpose swaps the left and the upper neighbours, so it
+	 * keeps which of two adjacent cells comes first; the other six reverse it
+	 * for the rows, the columns or both, and 4 to 7 in 100 random games on
+	 * boards of dimension 4 to 8 reach a position whose rotation or
+	 * reflection plays differently.
+	 *
+	 * SYMMETRY_KEYS[dim][s][plane][cell] is the Zobrist key of the cell the cell
+	 * is mapped to, so the hash under symmetry s is the hash of the board mapped
+	 * by s, and is updated incrementally like the hash of the board.
+	 */
+	private static final int[][][] SYMMETRY_CELLS = new int[MAX_DIM + 1][SYMMETRIES][];
+	private static final long[][][][] SYMMETRY_KEYS = new long[MAX_DIM + 1][SYMMETRIES][5][];
+	static {
+		for(int dim = 1; dim <= MAX_DIM; dim++) {
+			for(int s = 0; s < SYMMETRIES; s++) {
+				int[] map = SYMMETRY_CELLS[dim][s] = new int[dim * dim];
+				for(int row = 0; row < dim; row++) {
+					for(int col = 0; col < dim; col++)
+						map[row * dim + col] = s == TRANSPOSE ? col * dim + row : row * dim + col;
+				}
+				for(int plane = 0; plane < 5; plane++) {
+					long[] keys = SYMMETRY_KEYS[dim][s][plane] = new long[dim * dim];
+					for(int cell = 0; cell < dim * dim; cell++)
+						keys[cell] = ZOBRIST[plane][map[cell]];
+				}
+			}
+		}
+	}
+
+	/* Number of planes (the five planes and the hashes) and scores saved in one undo record. */
+	private static final int UNDO_PLANES = 5 + SYMMETRIES, UNDO_SCORES = 7;
+
+	/*
+	 * The undo stack. Record i holds the planes and scores of the board
+	 * before the (i+1)-th move made on this board, so any move can be
+	 * reverted exactly. A board has at most dim * dim moves.
+	 */
+	private long[] undoPlanes;
+	private int[] undoScores;
+	private int undoTop;
+
+	/* The work queue of updateBoard, every cell is queued at most once per move. */
+	private int[] queue;
 
 	/** Player ID of None. */
 	public static final int PLAYER_NONE = Piece.EMPTY;
@@ -60,11 +190,14 @@ public class Board implements Piece {
 	 * Initialize a new Board object. 
 	 *
 	 * @param dim  dimension of the board
+	 * @throws IllegalArgumentException  if the dimension does not fit the bit planes
 	 */
 	public Board(int dim) {
+		if(dim < 1 || dim > MAX_DIM)
+			throw new IllegalArgumentException("Board dimension must be between 1 and " + MAX_DIM + ": " + dim);
 		this.dim = dim;
-		board = new Cell[dim][dim];
 		initboard();
+		initUndo();
 	}
 
 	/**
@@ -80,12 +213,20 @@ public class Board implements Piece {
         this.blackPScore = b.blackPScore;
 		this.whiteSideScore = b.whiteSideScore;
 		this.blackSideScore = b.blackSideScore;
-		this.board = new Cell[dim][dim];
-		for(int row = 0; row < this.dim; row++) {
-			for(int col = 0; col < this.dim; col++) {
-				this.board[row][col] = new Cell(b.getCell(row, col));
-			}
-		}
+		this.white = b.white;
+		this.black = b.black;
+		this.captured = b.captured;
+		this.ownerWhite = b.ownerWhite;
+		this.ownerBlack = b.ownerBlack;
+		this.cells = b.cells;
+		this.rays = b.rays;
+		this.firstCol = b.firstCol;
+		this.lastCol = b.lastCol;
+		this.sides = b.sides;
+		this.numEmpty = b.numEmpty;
+		this.symmetryKeys = b.symmetryKeys;
+		this.hashes = b.hashes.clone();
+		initUndo();
 	}
 
 	/** 
@@ -143,14 +284,185 @@ public class Board implements Piece {
 	}
 
 	/**
-	 * Get the cell at (row, col).
+	 * Get the Zobrist hash of the board.
+	 * Equal boards have equal hashes, and the hash is updated incrementally by each move.
+	 *
+	 * @return the hash of the board
+	 */
+	public long getHash() {
+		return hashes[IDENTITY];
+	}
+
+	/**
+	 * Get the hash of the board mapped by a symmetry.
+	 *
+	 * @param symmetry  a symmetry, 0 to SYMMETRIES - 1
+	 * @return          the hash of the mapped board
+	 */
+	public long getHash(int symmetry) {
+		return hashes[symmetry];
+	}
+
+	/**
+	 * Get the symmetry mapping the board to its canonical form, the mapped
+	 * board of the smallest hash. Boards which are transposes of each other
+	 * have the same canonical form.
+	 *
+	 * @return the symmetry of the canonical form, the first one on ties
+	 */
+	public int getCanonicalSymmetry() {
+		int best = IDENTITY;
+		for(int s = 1; s < SYMMETRIES; s++) {
+			if(hashes[s] < hashes[best])
+				best = s;
+		}
+		return best;
+	}
+
+	/**
+	 * Get the hash of the canonical form of the board.
+	 *
+	 * @return the smallest hash of the board under all symmetries
+	 */
+	public long getCanonicalHash() {
+		return hashes[getCanonicalSymmetry()];
+	}
+
+	/**
+	 * Map a cell by a symmetry.
+	 *
+	 * @param cell      the cell index row * dim + col
+	 * @param symmetry  a symmetry, 0 to SYMMETRIES - 1
+	 * @return          the index of the mapped cell
+	 */
+	public int mapCell(int cell, int symmetry) {
+		return SYMMETRY_CELLS[dim][symmetry][cell];
+	}
+
+	/**
+	 * Map a cell back, undoing a symmetry.
+	 *
+	 * @param cell      the index of a mapped cell
+	 * @param symmetry  the symmetry the cell was mapped by
+	 * @return          the index of the cell before it was mapped
+	 */
+	public int unmapCell(int cell, int symmetry) {
+		return SYMMETRY_CELLS[dim][symmetry][cell];
+	}
+
+	/**
+	 * Get the dimension of the board.
+	 *
+	 * @return the dimension of the board
+	 */
+	public int getDim() {
+		return dim;
+	}
+
+	/**
+	 * Get a snapshot of the cell at (row, col).
+	 * The returned cell is not backed by the board, so updating it has no effect.
 	 *
 	 * @param row  the row of cell 
 	 * @param col  the col of cell
 	 * @return     the cell with row and column as input
 	 */
 	public Cell getCell(int row, int col) {
-		return board[row][col];
+		return new Cell(row, col, getToken(row, col), getPlayer(row, col));
+	}
+
+	/**
+	 * Get the token at (row, col).
+	 *
+	 * @param row  the row of cell 
+	 * @param col  the col of cell
+	 * @return     one of the TOKEN_* constants
+	 */
+	public String getToken(int row, int col) {
+		long bit = bit(row, col);
+		boolean isCaptured = (captured & bit) != 0;
+		if((white & bit) != 0)
+			return isCaptured ? TOKEN_WHITE_CAPTURED : TOKEN_WHITE;
+		if((black & bit) != 0)
+			return isCaptured ? TOKEN_BLACK_CAPTURED : TOKEN_BLACK;
+		return isCaptured ? TOKEN_EMPTY_CAPTURED : TOKEN_EMPTY;
+	}
+
+	/**
+	 * Get the owner of the cell at (row, col).
+	 *
+	 * @param row  the row of cell 
+	 * @param col  the col of cell
+	 * @return     the owner ID
+	 */
+	public int getPlayer(int row, int col) {
+		long bit = bit(row, col);
+		if((ownerWhite & bit) != 0)
+			return PLAYER_WHITE;
+		if((ownerBlack & bit) != 0)
+			return PLAYER_BLACK;
+		return PLAYER_NONE;
+	}
+
+	/**
+	 * Check whether the cell at (row, col) is empty, i.e. a move can be placed on it.
+	 *
+	 * @param row  the row of cell 
+	 * @param col  the col of cell
+	 * @return     true if the cell holds TOKEN_EMPTY, otherwise false
+	 */
+	public boolean isEmpty(int row, int col) {
+		return (emptyCells() & bit(row, col)) != 0;
+	}
+
+	/**
+	 * Get the empty cells as a mask, cell (row, col) is bit row * dim + col.
+	 *
+	 * @return the mask of the cells holding TOKEN_EMPTY
+	 */
+	public long getEmptyCells() {
+		return emptyCells();
+	}
+
+	/**
+	 * Count the live tokens of a player diagonally adjacent to a cell,
+	 * the tokens a token on the cell would add to the potential score.
+	 *
+	 * @param row     row index of the cell
+	 * @param col     column index of the cell
+	 * @param player  the player ID
+	 * @return        the number of diagonal tokens, 0 to 4
+	 */
+	public int countDiagonalTokens(int row, int col, int player) {
+		return Long.bitCount(diagonals(bit(row, col)) & liveCells(player));
+	}
+
+	/**
+	 * Check whether a move on an empty cell would capture cells, i.e. whether it
+	 * closes a region of cells without the player's non-captured token that
+	 * does not reach the sides of the board. The board is not changed.
+	 *
+	 * @param row     the row of cell
+	 * @param col     the col of cell
+	 * @param player  the player of the move
+	 * @return        true if the move captures, otherwise false
+	 */
+	public boolean isCaptureMove(int row, int col, int player) {
+		long bit = bit(row, col);
+		long open = cells & ~(liveCells(player) | bit);
+		long seeds = orthogonals(bit) & open, region, previous;
+		while(seeds != 0) {
+			/* Fill the region of the lowest seed. */
+			region = seeds & -seeds;
+			do {
+				previous = region;
+				region = (region | orthogonals(region)) & open;
+			} while(region != previous);
+			if((region & sides) == 0)
+				return true;
+			seeds &= ~region;
+		}
+		return false;
 	}
 
 	/** 
@@ -159,13 +471,16 @@ public class Board implements Piece {
 	 * @return     true if the board is complete, otherwise false
 	 */
 	public boolean isComplete() {
-		for(int row = 0; row < dim; row++) {
-			for(int col = 0; col < dim; col++) {
-				if(board[row][col].getToken().equals(TOKEN_EMPTY))
-					return false;
-			}
-		}
-		return true;
+		return numEmpty == 0;
+	}
+
+	/**
+	 * Get the number of empty cells, i.e. the number of moves left in the game.
+	 *
+	 * @return the number of cells holding TOKEN_EMPTY
+	 */
+	public int getNumEmpty() {
+		return numEmpty;
 	}
 
 	/** 
@@ -174,14 +489,14 @@ public class Board implements Piece {
 	 * @return      the visualization of the board in string
 	 */
 	public String toString() {
-		String boardString = "";
+		StringBuilder boardString = new StringBuilder();
 		for(int row = 0; row < dim; row++) {
 			for(int col = 0; col < dim; col++) {
-				boardString += board[row][col].getToken() + " ";
+				boardString.append(getToken(row, col)).append(' ');
 			}
-			boardString += "\n";
+			boardString.append('\n');
 		}
-		return boardString;
+		return boardString.toString();
 	}
 
 	/** 
@@ -191,7 +506,9 @@ public class Board implements Piece {
 	 * @return   true if the move is valid, otherwise false
 	 */
 	public boolean isValid(Move m) {
-		return board[m.Row][m.Col].getToken().equals(TOKEN_EMPTY);
+		if(m.Row < 0 || m.Row >= dim || m.Col < 0 || m.Col >= dim)
+			return false;
+		return isEmpty(m.Row, m.Col);
 	}
 
 	/** 
@@ -203,7 +520,6 @@ public class Board implements Piece {
 	public int getWinner() {
 		if(!isComplete())
 			return EMPTY;
-		updateScore();
 		if(whiteScore > blackScore)
 			return WHITE;
 		if(whiteScore < blackScore)
@@ -213,6 +529,7 @@ public class Board implements Piece {
 
 	/** 
 	 * Make a move. 
+	 * The board is saved before the move, so it can be reverted by unmakeMove().
 	 * 
 	 * @param m  a Move object
 	 * @return   true is the move is valid, otherwise false. 
@@ -220,245 +537,299 @@ public class Board implements Piece {
 	public boolean makeMove(Move m) {
 		if(!isValid(m))
 			return false;
-		if(m.P == PLAYER_WHITE) {
-			if(board[m.Row][m.Col].getPlayer() == PLAYER_NONE) 
-				board[m.Row][m.Col].setToken(TOKEN_WHITE);
-			else
-				board[m.Row][m.Col].setToken(TOKEN_WHITE_CAPTURED);
-		} else if(m.P == PLAYER_BLACK) {
-			if(board[m.Row][m.Col].getPlayer() == PLAYER_NONE) 
-				board[m.Row][m.Col].setToken(TOKEN_BLACK);
-			else
-				board[m.Row][m.Col].setToken(TOKEN_BLACK_CAPTURED);
-		}
+		pushUndo();
+		long oldOwnerWhite = ownerWhite, oldOwnerBlack = ownerBlack, oldEmpty = emptyCells();
+		long oldWhite = liveCells(PLAYER_WHITE), oldBlack = liveCells(PLAYER_BLACK);
+		/* An empty cell is never owned, so the placed token is never captured. */
+		if(m.P == PLAYER_WHITE)
+			white |= bit(m.Row, m.Col);
+		else if(m.P == PLAYER_BLACK)
+			black |= bit(m.Row, m.Col);
 		updateBoard(m);
-		updateScore();
+		updateScore(oldOwnerWhite, oldOwnerBlack, oldEmpty, oldWhite, oldBlack);
+		updateHash();
 		return true;
 	}
 
+	/**
+	 * Revert the last valid move, including its captures, self captures and scores.
+	 * A copied board can not revert the moves made before it was copied.
+	 *
+	 * @throws IllegalStateException  if there is no move to revert
+	 */
+	public void unmakeMove() {
+		if(undoTop == 0)
+			throw new IllegalStateException("No move to unmake");
+		undoTop--;
+		int p = undoTop * UNDO_PLANES, s = undoTop * UNDO_SCORES;
+		white = undoPlanes[p];
+		black = undoPlanes[p+1];
+		captured = undoPlanes[p+2];
+		ownerWhite = undoPlanes[p+3];
+		ownerBlack = undoPlanes[p+4];
+		System.arraycopy(undoPlanes, p+5, hashes, 0, SYMMETRIES);
+		whiteScore = undoScores[s];
+		blackScore = undoScores[s+1];
+		whiteSideScore = undoScores[s+2];
+		blackSideScore = undoScores[s+3];
+		whitePScore = undoScores[s+4];
+		blackPScore = undoScores[s+5];
+		numEmpty = undoScores[s+6];
+	}
+
 	/* --------------------- Methods below are private ------------------- */
 
+	/* Allocate the undo stack, one record per cell, and the work queue. */
+	private void initUndo() {
+		undoPlanes = new long[dim * dim * UNDO_PLANES];
+		undoScores = new int[dim * dim * UNDO_SCORES];
+		undoTop = 0;
+		queue = new int[dim * dim];
+	}
+
+	/* Save the board on the undo stack. */
+	private void pushUndo() {
+		int p = undoTop * UNDO_PLANES, s = undoTop * UNDO_SCORES;
+		undoPlanes[p] = white;
+		undoPlanes[p+1] = black;
+		undoPlanes[p+2] = captured;
+		undoPlanes[p+3] = ownerWhite;
+		undoPlanes[p+4] = ownerBlack;
+		System.arraycopy(hashes, 0, undoPlanes, p+5, SYMMETRIES);
+		undoScores[s] = whiteScore;
+		undoScores[s+1] = blackScore;
+		undoScores[s+2] = whiteSideScore;
+		undoScores[s+3] = blackSideScore;
+		undoScores[s+4] = whitePScore;
+		undoScores[s+5] = blackPScore;
+		undoScores[s+6] = numEmpty;
+		undoTop++;
+	}
+
 	/* Initialize a new board. */
 	private void initboard() {
-		for(int row = 0; row < dim; row++) {
-			for(int col = 0; col < dim; col++) {
-				board[row][col] = new Cell(row, col, TOKEN_EMPTY, PLAYER_NONE);
-			}
-		}
+		cells = dim == MAX_DIM ? -1L : (1L << (dim * dim)) - 1;
+		rays = RAYS[dim];
+		firstCol = 0;
+		for(int row = 0; row < dim; row++)
+			firstCol |= bit(row, 0);
+		lastCol = firstCol << (dim - 1);
+		sides = firstCol | lastCol | ((1L << dim) - 1) | ((1L << dim) - 1) << (dim * (dim - 1));
+		numEmpty = dim * dim;
+		symmetryKeys = SYMMETRY_KEYS[dim];
+		for(int s = 0; s < SYMMETRIES; s++)
+			hashes[s] = ZOBRIST_DIM[dim];
+	}
+
+	/* The bit of cell (row, col). */
+	private long bit(int row, int col) {
+		return 1L << (row * dim + col);
 	}
 
-	/* Update a board after one move by checking for caputured cells. */
+	/* The cells holding TOKEN_EMPTY. */
+	private long emptyCells() {
+		return cells & ~(white | black | captured);
+	}
+
+	/* The cells holding the non-captured token of a player. */
+	private long liveCells(int player) {
+		if(player == PLAYER_WHITE)
+			return white & ~captured;
+		return black & ~captured;
+	}
+
+	/*
+	 * Update a board after one move by checking for caputured cells.
+	 * Starting from each neighbour of the move, visit the region of cells
+	 * without the player's token around it in breadth-first order. The
+	 * region is captured if every cell of it has the token in all four
+	 * directions. Cells are visited once per move, the queue holds cell
+	 * indexes and the visited and captured cells are masks.
+	 */
 	private void updateBoard(Move m) {
-		ArrayList<Vector> visited = new ArrayList<>();
-		ArrayList<Vector> unvisited = new ArrayList<>();
-		ArrayList<Vector> captured = new ArrayList<>();
-		ArrayList<Vector> neighbours = new ArrayList<>();
-		int boundaries;
-		String token;
-		Vector currVec;
+		long token = liveCells(m.P), visited = 0, queued, region;
+		int start = m.Row * dim + m.Col, head, tail, cell, next;
 		boolean found;
 
-		if(m.P == PLAYER_WHITE)
-			token = TOKEN_WHITE;
-		else
-			token = TOKEN_BLACK;
-		addNeighbours(m.Row, m.Col, token, neighbours);
-		while(neighbours.size() > 0) {
-			unvisited.clear();
-			captured.clear();
+		for(int d = 0; d < 4; d++) {
+			next = neighbour(start, d);
+			if(next < 0 || (token & (1L << next)) != 0 || (visited & (1L << next)) != 0)
+				continue;
+			region = 0;
 			found = true;
-			unvisited.add(neighbours.remove(0));
-			while(unvisited.size() > 0) {
-				currVec = unvisited.remove(0);
-				if(!isVecInList(currVec, visited)) {
-					boundaries = boundaryScore(currVec.Row, currVec.Col, token);
-					visited.add(currVec);
-					if(boundaries == 4)
-						captured.add(currVec);
-					else {
-						found = false;
+			head = 0;
+			tail = 0;
+			queue[tail++] = next;
+			queued = 1L << next;
+			while(head < tail) {
+				cell = queue[head++];
+				visited |= 1L << cell;
+				if(boundaryScore(cell, token) == 4)
+					region |= 1L << cell;
+				else
+					found = false;
+				for(int e = 0; e < 4; e++) {
+					next = neighbour(cell, e);
+					if(next >= 0 && (token & (1L << next)) == 0 && ((visited | queued) & (1L << next)) == 0) {
+						queue[tail++] = next;
+						queued |= 1L << next;
 					}
-					addNeighbours(currVec.Row, currVec.Col, token, unvisited);
 				}
 			}
 			if(found) {
-				for(Vector v : captured)
-					capture(v.Row, v.Col, m.P);
+				while(region != 0) {
+					cell = Long.numberOfTrailingZeros(region);
+					region &= region - 1;
+					capture(cell / dim, cell % dim, m.P);
+				}
 			}
 		}
-		updateSelfCapture(token);
+		updateSelfCapture(m.P);
 	}
 
-	/* Add 4 adjacent cells into a ArrayList. */
-	private void addNeighbours(int row, int col, String token, ArrayList<Vector> list) {
-		/* Add cell left. */
-		if(col > 0) {
-			if(!board[row][col-1].getToken().equals(token))
-				list.add(new Vector(row, col-1));
-		}
-		/* Add cell right. */
-		if(col < dim - 1) {
-			if(!board[row][col+1].getToken().equals(token))
-				list.add(new Vector(row, col+1));
+	/* The index of the adjacent cell left, right, up or down (direction 0 to 3) of a cell, or -1 if it is off the board. */
+	private int neighbour(int cell, int direction) {
+		int col = cell % dim;
+		switch(direction) {
+			case 0:
+				return col > 0 ? cell - 1 : -1;
+			case 1:
+				return col < dim - 1 ? cell + 1 : -1;
+			case 2:
+				return cell >= dim ? cell - dim : -1;
+			default:
+				return cell + dim < dim * dim ? cell + dim : -1;
 		}
-		/* Add cell up. */
-		if(row > 0) {
-			if(!board[row-1][col].getToken().equals(token))
-				list.add(new Vector(row-1, col));
+	}
+
+	/* Update the hashes with the bits changed since the last undo record. */
+	private void updateHash() {
+		int p = (undoTop - 1) * UNDO_PLANES;
+		long dWhite = undoPlanes[p] ^ white, dBlack = undoPlanes[p+1] ^ black,
+				dCaptured = undoPlanes[p+2] ^ captured, dOwnerWhite = undoPlanes[p+3] ^ ownerWhite,
+				dOwnerBlack = undoPlanes[p+4] ^ ownerBlack;
+		for(int s = 0; s < SYMMETRIES; s++) {
+			long[][] keys = symmetryKeys[s];
+			hashes[s] ^= planeHash(keys[0], dWhite)
+					^ planeHash(keys[1], dBlack)
+					^ planeHash(keys[2], dCaptured)
+					^ planeHash(keys[3], dOwnerWhite)
+					^ planeHash(keys[4], dOwnerBlack);
 		}
-		/* Add cell down. */
-		if(row < dim - 1) {
-			if(!board[row+1][col].getToken().equals(token))
-				list.add(new Vector(row+1, col));	
+	}
+
+	/* The hash of the board under a symmetry computed from the planes, not
+	   incrementally, so tests can check the incremental hashes. */
+	long computeHash(int symmetry) {
+		long[][] keys = symmetryKeys[symmetry];
+		return ZOBRIST_DIM[dim] ^ planeHash(keys[0], white) ^ planeHash(keys[1], black)
+				^ planeHash(keys[2], captured) ^ planeHash(keys[3], ownerWhite) ^ planeHash(keys[4], ownerBlack);
+	}
+
+	/* The xor of the keys of the cells in a mask. */
+	private static long planeHash(long[] keys, long mask) {
+		long h = 0;
+		while(mask != 0) {
+			h ^= keys[Long.numberOfTrailingZeros(mask)];
+			mask &= mask - 1;
 		}
+		return h;
 	}
 
-	/* The number of directions exist specific token. */
-	private int boundaryScore(int row, int col, String token) {
+	/* The number of directions exist specific token. A direction is one mask test against the ray of the cell. */
+	private int boundaryScore(int cell, long token) {
 		int boundaries = 0;
-		/* Check left direction. */
-		for(int i = 0; i < col; i++) {
-			if(board[row][i].getToken().equals(token)) {
-				boundaries++;
-				break;
-			}
-		}
-		/* Check right direction. */
-		for(int i = dim-1; i > col; i--) {
-			if(board[row][i].getToken().equals(token)) {
-				boundaries++;
-				break;
-			}
-		}
-		/* Check up direction. */
-		for(int i = 0; i < row; i++) {
-			if(board[i][col].getToken().equals(token)) {
-				boundaries++;
-				break;
-			}
-		}
-		/* Check down direction. */
-		for(int i = dim-1; i > row; i--) {
-			if (board[i][col].getToken().equals(token)) {
+		for(int d = 0; d < 4; d++) {
+			if((token & rays[d][cell]) != 0)
 				boundaries++;
-				break;
-			}
 		}
 		return boundaries;
 	}
 
 	/* Capture a cell. Change tokens and set player of the cell as its owner. */
 	private void capture(int row, int col, int player) {
+		long bit = bit(row, col);
 		/* Conver the token to captured token. */
-		if(board[row][col].getToken().equals(TOKEN_EMPTY))
-			board[row][col].setToken(TOKEN_EMPTY_CAPTURED);
-		if(board[row][col].getToken().equals(TOKEN_WHITE))
-			board[row][col].setToken(TOKEN_WHITE_CAPTURED);
-		if(board[row][col].getToken().equals(TOKEN_BLACK))
-			board[row][col].setToken(TOKEN_BLACK_CAPTURED);
+		captured |= bit;
 		/* Set the player as the owner of the cell. */
-		board[row][col].setPlayer(player);
-	}
-
-	/* Update scores for the board. */
-	private void updateScore() {
-		whiteScore = 0;
-		blackScore = 0;
-        whitePScore = 0;
-        blackPScore = 0;
-		whiteSideScore = 0;
-		blackSideScore = 0;
-		for(int row = 0; row < dim; row ++) {
-			for(int col = 0; col < dim; col++) {
-				if(board[row][col].getPlayer() == PLAYER_WHITE)
-					whiteScore += 1;
-				if(board[row][col].getPlayer() == PLAYER_BLACK)
-					blackScore += 1;
-				if(board[row][col].getToken().equals(TOKEN_WHITE)) {
-                    whitePScore += calcPotentialScore(row, col, TOKEN_WHITE);
-					if(row == 0 || col == 0 || row == dim-1 || col == dim-1)
-						whiteSideScore++;
-				}
-				if(board[row][col].getToken().equals(TOKEN_BLACK)) {
-                    blackPScore += calcPotentialScore(row, col, TOKEN_BLACK);
-					if(row == 0 || col == 0 || row == dim-1 || col == dim-1)
-						blackSideScore++;
-				}
-			}
+		ownerWhite &= ~bit;
+		ownerBlack &= ~bit;
+		if(player == PLAYER_WHITE)
+			ownerWhite |= bit;
+		else if(player == PLAYER_BLACK)
+			ownerBlack |= bit;
+	}
+
+	/* Update scores for the board from the cells changed by the last move. */
+	private void updateScore(long oldOwnerWhite, long oldOwnerBlack, long oldEmpty, long oldWhite, long oldBlack) {
+		long newWhite = liveCells(PLAYER_WHITE), newBlack = liveCells(PLAYER_BLACK);
+		long changedWhite = oldWhite ^ newWhite, changedBlack = oldBlack ^ newBlack;
+		/* Captured cells and the placed cell. */
+		whiteScore += Long.bitCount(ownerWhite & ~oldOwnerWhite) - Long.bitCount(oldOwnerWhite & ~ownerWhite);
+		blackScore += Long.bitCount(ownerBlack & ~oldOwnerBlack) - Long.bitCount(oldOwnerBlack & ~ownerBlack);
+		numEmpty -= Long.bitCount(oldEmpty & ~emptyCells());
+		/* Tokens placed on or captured from the sides. */
+		whiteSideScore += Long.bitCount(newWhite & changedWhite & sides) - Long.bitCount(oldWhite & changedWhite & sides);
+		blackSideScore += Long.bitCount(newBlack & changedBlack & sides) - Long.bitCount(oldBlack & changedBlack & sides);
+		/* Only the changed tokens and their diagonal neighbours change potential. */
+		if(changedWhite != 0) {
+			long touched = changedWhite | diagonals(changedWhite);
+			whitePScore += calcPotentialScore(newWhite, touched) - calcPotentialScore(oldWhite, touched);
+		}
+		if(changedBlack != 0) {
+			long touched = changedBlack | diagonals(changedBlack);
+			blackPScore += calcPotentialScore(newBlack, touched) - calcPotentialScore(oldBlack, touched);
 		}
 	}
 
-    private int calcPotentialScore(int row, int col, String token) {
-        int score = 0, num = 1;
-        if(row > 0 && col > 0) {
-            if(board[row-1][col-1].getToken().equals(token))
-                score += num++; // Left-Up
-        }
-        if(row > 0 && col < dim-1) {
-            if(board[row-1][col+1].getToken().equals(token))
-                score += num++; // Right-Up
-        }
-        if(row < dim-1 && col > 0) {
-            if(board[row+1][col-1].getToken().equals(token))
-                score += num++;
-        }
-        if(row < dim-1 && col < dim-1) {
-            if(board[row+1][col+1].getToken().equals(token))
-                score += num;
-        }
-        return score;
-    }
+	/* The cells orthogonally adjacent to any of the given cells. */
+	private long orthogonals(long c) {
+		return (((c & ~firstCol) >>> 1) | ((c & ~lastCol) << 1) | (c >>> dim) | (c << dim)) & cells;
+	}
 
-	/* Find piece captured by the player him/herself. 
-	   The strategy is check 4 adjacent cells, if none of them are non-captured opponent token or empty token. */
-	private void updateSelfCapture(String token) {
-		boolean check;
-		String token_op;  // Opponent token
-		int n;
-		/* Set opponent token. */
-		if(token.equals(TOKEN_BLACK))
-			token_op = TOKEN_WHITE;
-		else
-			token_op = TOKEN_BLACK;
-		for(int row = 0; row < dim; row++) {
-			for(int col = 0; col < dim; col++) {
-				if(board[row][col].getToken().equals(token)) {
-					if(col > 0 && col < dim - 1 && row > 0 && row < dim - 1) {
-						/* Check 4 adjacent cells whether none of them are non-captured opopnent token or empty token. */
-						check = true;
-						n = 0;
-						if(board[row][col-1].getToken().equals(token_op) || board[row][col-1].getToken().equals(TOKEN_EMPTY))
-							check = false; // Left
-						if(board[row][col+1].getToken().equals(token_op) || board[row][col+1].getToken().equals(TOKEN_EMPTY))
-							check = false; // Right
-						if(board[row-1][col].getToken().equals(token_op) || board[row-1][col].getToken().equals(TOKEN_EMPTY))
-							check = false; // Up
-						if(board[row+1][col].getToken().equals(token_op) || board[row+1][col].getToken().equals(TOKEN_EMPTY))
-							check = false; // Down
-						/* Check whether there is at least one adjacent cell is captured. */
-						if(board[row][col-1].getToken().equals(token))
-							n++; // Left
-						if(board[row][col+1].getToken().equals(token))
-							n++; // Right
-						if(board[row-1][col].getToken().equals(token))
-							n++; // Up
-						if(board[row+1][col].getToken().equals(token))
-							n++; // Down
-						/* Update if found one self captured piece. */
-						if(check && n < 4)
-							capture(row, col, PLAYER_NONE);
-					}
-				}
-			}
-		}
+	/* The cells diagonally adjacent to any of the given cells. */
+	private long diagonals(long c) {
+		long left = c & ~firstCol, right = c & ~lastCol;
+		return ((left >>> (dim + 1)) | (right >>> (dim - 1)) | (left << (dim - 1)) | (right << (dim + 1))) & cells;
 	}
 
-	/* Check whether a Vector object is in a ArrayList. (Checking by value, not reference.) */
-	private boolean isVecInList(Vector v, ArrayList<Vector> list) {
-		for(Vector v_l : list) {
-			if(v.Row == v_l.Row && v.Col == v_l.Col)
-				return true;
+	/*
+	 * The potential score of the tokens in a mask. A token with k diagonal
+	 * tokens of its own scores 1 + 2 + ... + k, which is k plus the number of
+	 * pairs of its diagonal tokens, so the score is counted from the four
+	 * planes of tokens having a token at each diagonal.
+	 */
+	private int calcPotentialScore(long token, long mask) {
+		token &= cells;
+		long upLeft = token & (token << (dim + 1)) & ~firstCol & mask;
+		long upRight = token & (token << (dim - 1)) & ~lastCol & mask;
+		long downLeft = token & (token >>> (dim - 1)) & ~firstCol & mask;
+		long downRight = token & (token >>> (dim + 1)) & ~lastCol & mask;
+		return Long.bitCount(upLeft) + Long.bitCount(upRight) + Long.bitCount(downLeft) + Long.bitCount(downRight)
+				+ Long.bitCount(upLeft & upRight) + Long.bitCount(upLeft & downLeft) + Long.bitCount(upLeft & downRight)
+				+ Long.bitCount(upRight & downLeft) + Long.bitCount(upRight & downRight) + Long.bitCount(downLeft & downRight);
+	}
+
+	/*
+	 * Find pieces captured by the player him/herself: a live token of the
+	 * player off the sides, without an empty cell or a live opponent token
+	 * next to it, and not surrounded by its own live tokens. The cells are
+	 * checked in row-major order and earlier self captures in the scan
+	 * count. Only tokens without a blocking neighbour are looked at, found
+	 * for all cells at once; the blocking cells do not change in the scan.
+	 */
+	private void updateSelfCapture(int player) {
+		long blocking = liveCells(player == PLAYER_WHITE ? PLAYER_BLACK : PLAYER_WHITE) | emptyCells();
+		long candidates = liveCells(player) & ~sides & ~orthogonals(blocking);
+		long neighbours;
+		while(candidates != 0) {
+			neighbours = orthogonals(Long.lowestOneBit(candidates));
+			/* Captured unless all four neighbours are still its own live tokens. */
+			if((neighbours & liveCells(player)) != neighbours) {
+				int cell = Long.numberOfTrailingZeros(candidates);
+				capture(cell / dim, cell % dim, PLAYER_NONE);
+			}
+			candidates &= candidates - 1;
 		}
-		return false;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  EndgameCalibration:
+ *    Reports the largest number of empty cells the exact endgame solver
+ *    finishes within its budget, half the time of a move, for each dimension.
+ *    The solver is timed on seeded random positions with more and more empty
+ *    cells, until the slowest position takes longer than its budget. The
+ *    solver is first run untimed on small endgames of every dimension, so
+ *    the JIT has compiled it before the first position is timed.
+ *
+ *    Usage: java aiproj.sharwang.EndgameCalibration [movetime ms] [positions] [warm up s]
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class EndgameCalibration implements Piece {
+	/* The dimensions measured. */
+	private static final int[] DIMS = {6, 7, 8};
+
+	/* The largest number of empty cells of the warm up positions. */
+	private static final int WARM_UP_EMPTY = 10;
+
+	public static void main(String[] args) {
+		long moveTime = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		int positions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long warmUp = args.length > 2 ? Long.parseLong(args[2]) : 10;
+		warmUp(warmUp * 1000000000L);
+		int[] solved = new int[DIMS.length];
+		System.out.println("dim empty   mean(ms)    max(ms)      nodes");
+		for(int d = 0; d < DIMS.length; d++) {
+			int dim = DIMS[d];
+			int sustained = 0;
+			for(int empty = 1; empty <= dim * dim - 2; empty++) {
+				long total = 0, max = 0, nodes = 0;
+				for(int i = 0; i < positions; i++) {
+					SharWang p = position(dim, empty, i);
+					long start = System.nanoTime();
+					p.makeMove();
+					long nanos = System.nanoTime() - start;
+					total += nanos;
+					max = Math.max(max, nanos);
+					nodes += p.getLastNodes();
+				}
+				System.out.printf("%3d %5d %10.1f %10.1f %10d%n", dim, empty, total / 1e6 / positions,
+						max / 1e6, nodes / positions);
+				if(max > moveTime * 500000L)
+					break;
+				sustained = empty;
+			}
+			solved[d] = sustained;
+		}
+		for(int d = 0; d < DIMS.length; d++)
+			System.out.println("dim " + DIMS[d] + ": " + solved[d] + " empty cells solved within half of a "
+					+ moveTime + "ms move");
+		System.exit(0);
+	}
+
+	/* Solve positions of every dimension with up to WARM_UP_EMPTY empty cells,
+	   untimed, for a time in nanoseconds. The seeds give other positions than
+	   those measured, see position(). */
+	private static void warmUp(long nanos) {
+		long end = System.nanoTime() + nanos;
+		for(int seed = 1000000; System.nanoTime() < end; seed++) {
+			for(int dim : DIMS) {
+				for(int empty = 1; empty <= WARM_UP_EMPTY && System.nanoTime() < end; empty++)
+					position(dim, empty, seed).makeMove();
+			}
+		}
+	}
+
+	/* A player to move at a seeded random position with a number of empty cells,
+	   solving it exactly. Captured cells are not empty, so random moves are
+	   played until exactly that many cells are empty. */
+	private static SharWang position(int dim, int empty, int seed) {
+		Random random = new Random(dim * 100000L + empty * 100 + seed);
+		while(true) {
+			Board b = new Board(dim);
+			List<Move> moves = new ArrayList<>();
+			while(b.getNumEmpty() > empty) {
+				Move m = new Move();
+				m.P = moves.size() % 2 == 0 ? WHITE : BLACK;
+				do {
+					m.Row = random.nextInt(dim);
+					m.Col = random.nextInt(dim);
+				} while(!b.makeMove(m));
+				moves.add(m);
+			}
+			if(b.getNumEmpty() != empty)
+				continue;
+			SharWang p = new SharWang();
+			p.setBook(null);
+			p.init(dim, moves.size() % 2 == 0 ? WHITE : BLACK);
+			p.setEndgameEmpty(empty);
+			p.setMoveTime(Long.MAX_VALUE / 2000000L);
+			for(Move m : moves)
+				p.play(m);
+			return p;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package aiproj.sharwang;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Engine:
+ *    The parts of SharWang which do not change during a game and can be
+ *    shared by many games in one JVM: the weights of the evaluation
+ *    function, the opening book, a pool of transposition tables and the
+ *    threads of the parallel searches. The weights and the book are read
+ *    only. The memory of the tables is fixed however many games use them:
+ *    the pool has a fixed number of tables (stripes), and each player takes
+ *    one, round robin, for its whole life. The tables are lock-free, and
+ *    their keys include the colour of the searching player, so players
+ *    sharing a stripe only share work that is valid for both. Each search
+ *    stores its entries with an age of its own, so searches sharing a stripe
+ *    do not make each other's entries look old.
+ *
+ *    The threads are made on first use and shared by the players: one pool
+ *    of helper threads for Lazy SMP and pondering, and one fork/join pool
+ *    for parallel root searches per number of threads. close() stops them.
+ *    The helper pool runs at most a fixed number of threads and does not
+ *    queue: a task submitted while all of them are busy is rejected, and the
+ *    player searches without that helper or does not ponder. So the threads
+ *    do not grow with the number of games sharing the engine.
+ *
+ *    Games share an engine through new SharWang(engine); a SharWang made
+ *    without one makes its own engine with one table, which it closes in
+ *    SharWang.close().
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public final class Engine {
+	/* The weights of each round from WeightsFile.FIRST_ROUND. */
+	private final double[][] weights;
+
+	/* The opening book, or null for none. */
+	private final OpeningBook book;
+
+	/* The stripes of the transposition table pool, and the next one to give out. */
+	private final TranspositionTable[] tables;
+	private final AtomicInteger nextTable = new AtomicInteger();
+
+	/* The pool of the helper and background threads and its most threads, the
+	   fork/join pools of the parallel root searches by parallelism, and whether
+	   the engine is closed. */
+	private ExecutorService helpers;
+	private final int helperThreads;
+	private final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+	private boolean closed;
+
+	/**
+	 * Create an engine.
+	 *
+	 * @param weights  the weights of each round from WeightsFile.FIRST_ROUND, copied
+	 * @param book     the opening book, or null for none
+	 * @param entries  the number of entries of each transposition table
+	 * @param stripes  the number of transposition tables
+	 * @param policy   the replacement policy of the tables
+	 * @param helpers  the most helper and background threads running at once
+	 * @throws IllegalArgumentException  if there are not WeightsFile.ROUNDS rounds of weights,
+	 *                                   or the tables or the helpers are invalid
+	 */
+	public Engine(double[][] weights, OpeningBook book, int entries, int stripes, int policy, int helpers) {
+		if(weights.length != WeightsFile.ROUNDS)
+			throw new IllegalArgumentException("Weights of " + weights.length + " rounds, not " + WeightsFile.ROUNDS);
+		if(stripes < 1)
+			throw new IllegalArgumentException("Table pool without tables: " + stripes);
+		if(helpers < 1)
+			throw new IllegalArgumentException("Helper pool without threads: " + helpers);
+		this.weights = new double[weights.length][];
+		for(int i = 0; i < weights.length; i++) {
+			if(weights[i].length != WeightsFile.WEIGHTS)
+				throw new IllegalArgumentException("Round " + (WeightsFile.FIRST_ROUND + i) + " has "
+						+ weights[i].length + " weights");
+			this.weights[i] = weights[i].clone();
+		}
+		this.book = book;
+		tables = new TranspositionTable[stripes];
+		for(int i = 0; i < stripes; i++)
+			tables[i] = new TranspositionTable(entries, policy);
+		helperThreads = helpers;
+	}
+
+	/**
+	 * Create an engine from the system properties of SharWang:
+	 * sharwang.weights, sharwang.book, sharwang.tt.entries (the entries of
+	 * each table), sharwang.tt.stripes (the number of tables, the number of
+	 * processors by default), sharwang.tt.replace and sharwang.helpers (the
+	 * most helper threads, see defaultHelpers()).
+	 *
+	 * @return the engine
+	 * @throws IOException  if the weights file or the book can not be read
+	 */
+	public static Engine fromProperties() throws IOException {
+		String weightsPath = System.getProperty("sharwang.weights"), bookPath = System.getProperty("sharwang.book");
+		double[][] weights = weightsPath == null ? SharWang.DEFAULT_WEIGHTS : WeightsFile.read(Paths.get(weightsPath));
+		OpeningBook book = bookPath == null ? null : new OpeningBook(Paths.get(bookPath));
+		int policy = "always".equals(System.getProperty("sharwang.tt.replace"))
+				? TranspositionTable.REPLACE_ALWAYS : TranspositionTable.REPLACE_DEPTH;
+		return new Engine(weights, book, Integer.getInteger("sharwang.tt.entries", 1 << 18),
+				Integer.getInteger("sharwang.tt.stripes", Runtime.getRuntime().availableProcessors()), policy,
+				defaultHelpers());
+	}
+
+	/**
+	 * Get the most helper threads of an engine from the system property
+	 * sharwang.helpers, the number of processors by default.
+	 *
+	 * @return the number of threads
+	 */
+	public static int defaultHelpers() {
+		return Math.max(1, Integer.getInteger("sharwang.helpers", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Get the weights of the round with a number of pieces on the board: the
+	 * weights of the first round below it, and of the last round above it.
+	 * The array is shared and must not be changed.
+	 *
+	 * @param pieces  the number of pieces on the board
+	 * @return        the weights w1, w2 and w3
+	 */
+	double[] weightsFor(int pieces) {
+		int round = Math.min(Math.max(pieces, WeightsFile.FIRST_ROUND), WeightsFile.LAST_ROUND);
+		return weights[round - WeightsFile.FIRST_ROUND];
+	}
+
+	/**
+	 * Get the opening book.
+	 *
+	 * @return the book, or null for none
+	 */
+	public OpeningBook getBook() {
+		return book;
+	}
+
+	/**
+	 * Get the number of transposition tables of the pool.
+	 *
+	 * @return the number of stripes
+	 */
+	public int getStripes() {
+		return tables.length;
+	}
+
+	/**
+	 * Take a transposition table of the pool for a game, round robin.
+	 *
+	 * @return the table
+	 */
+	TranspositionTable takeTable() {
+		return tables[Math.floorMod(nextTable.getAndIncrement(), tables.length)];
+	}
+
+	/**
+	 * Get the pool of the helper and background threads, made on first use.
+	 * Its threads are daemons, so they do not keep the JVM running, and idle
+	 * threads end after a while. A task submitted while all the threads are
+	 * busy is rejected with a RejectedExecutionException.
+	 *
+	 * @return the pool
+	 * @throws IllegalStateException  if the engine is closed
+	 */
+	synchronized ExecutorService helpers() {
+		if(closed)
+			throw new IllegalStateException("Engine closed");
+		if(helpers == null) {
+			helpers = new ThreadPoolExecutor(0, helperThreads, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "sharwang-helper");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return helpers;
+	}
+
+	/**
+	 * Get the fork/join pool of the parallel root searches with a number of
+	 * threads, made on first use.
+	 *
+	 * @param parallelism  the number of threads
+	 * @return             the pool
+	 * @throws IllegalStateException  if the engine is closed
+	 */
+	synchronized ForkJoinPool pool(int parallelism) {
+		if(closed)
+			throw new IllegalStateException("Engine closed");
+		ForkJoinPool pool = pools.get(parallelism);
+		if(pool == null) {
+			pool = new ForkJoinPool(parallelism);
+			pools.put(parallelism, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * Stop the threads of the engine once their searches are done. The
+	 * engine can not search in parallel after it is closed.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if(helpers != null)
+			helpers.shutdown();
+		for(ForkJoinPool pool : pools.values())
+			pool.shutdown();
+		pools.clear();
+	}
+}
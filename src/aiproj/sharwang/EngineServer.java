@@ -0,0 +1,179 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  EngineServer:
+ *    Keeps one SharWang running across games and plays them over a line
+ *    protocol on standard input and output, so games after the first pay no
+ *    JVM start up or JIT warm up, and the transposition table and the
+ *    opening book stay in memory. At start up a short game is played to
+ *    compile the search before the first real move.
+ *
+ *    Commands, one per line, each answered by one line:
+ *      newgame dim colour    start a game as white or black   -> ok
+ *      opponent r c          the opponent placed at row r, column c -> ok
+ *      go [movetime ms]      make a move                      -> move r c
+ *      winner                the winner, as Player.getWinner  -> winner w
+ *      quit                  exit
+ *    A command which can not be carried out is answered by "error" and a
+ *    reason, and leaves the game as it was.
+ *
+ *    Usage: java aiproj.sharwang.EngineServer [warm up movetime ms]
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class EngineServer implements Piece {
+	/* The dimension and the move time of the warm up game. */
+	private static final int WARM_UP_DIM = 6;
+	private static final long DEFAULT_WARM_UP_MILLIS = 20;
+
+	/* The engine, kept across games, and whether a game has been started. */
+	private final SharWang engine = new SharWang();
+	private boolean playing;
+
+	/* The colour of the engine in the game. */
+	private int colour;
+
+	/* The number of moves made in the game, white moving first. */
+	private int moves;
+
+	public static void main(String[] args) throws IOException {
+		long warmUp = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_WARM_UP_MILLIS;
+		EngineServer server = new EngineServer();
+		if(warmUp > 0)
+			warmUp(warmUp);
+		PrintStream out = new PrintStream(System.out, true, "UTF-8");
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while((line = in.readLine()) != null) {
+			String[] words = line.trim().split("\\s+");
+			if(words[0].isEmpty())
+				continue;
+			if(words[0].equals("quit"))
+				break;
+			out.println(server.command(words));
+		}
+		System.exit(0);
+	}
+
+	/* Play a game between two players with a short move time, so the search
+	   is compiled before the first move of a real game. */
+	private static void warmUp(long millis) {
+		SharWang[] players = {new SharWang(), new SharWang()};
+		for(int i = 0; i < 2; i++) {
+			players[i].setBook(null);
+			players[i].setPonder(false);
+			players[i].init(WARM_UP_DIM, i == 0 ? WHITE : BLACK);
+			players[i].setMoveTime(millis);
+		}
+		for(int turn = 0; players[0].getWinner() == EMPTY; turn = 1 - turn)
+			players[1 - turn].opponentMove(players[turn].makeMove());
+		for(SharWang p : players)
+			p.close();
+	}
+
+	/* Carry out a command, and return its answer. */
+	private String command(String[] words) {
+		try {
+			switch(words[0]) {
+			case "newgame":
+				return newGame(words);
+			case "opponent":
+				return opponent(words);
+			case "go":
+				return go(words);
+			case "winner":
+				return "winner " + (playing ? engine.getWinner() : EMPTY);
+			default:
+				return "error unknown command " + words[0];
+			}
+		} catch(NumberFormatException e) {
+			return "error not a number: " + e.getMessage();
+		}
+	}
+
+	/* newgame dim colour */
+	private String newGame(String[] words) {
+		if(words.length != 3)
+			return "error usage: newgame dim colour";
+		int n = Integer.parseInt(words[1]);
+		int p = colour(words[2]);
+		if(engine.init(n, p) == INVALID)
+			return "error invalid game " + words[1] + " " + words[2];
+		colour = p;
+		moves = 0;
+		playing = true;
+		return "ok";
+	}
+
+	/* The colour of a word: white, black, or their numbers. */
+	private static int colour(String word) {
+		switch(word.toLowerCase()) {
+		case "white":
+			return WHITE;
+		case "black":
+			return BLACK;
+		default:
+			return Integer.parseInt(word);
+		}
+	}
+
+	/* opponent r c */
+	private String opponent(String[] words) {
+		if(words.length != 3)
+			return "error usage: opponent r c";
+		if(!playing)
+			return "error no game";
+		Move m = new Move();
+		m.P = Search.changePlayer(colour);
+		m.Row = Integer.parseInt(words[1]);
+		m.Col = Integer.parseInt(words[2]);
+		if(engine.getWinner() != EMPTY)
+			return "error game over";
+		if(toMove() != m.P)
+			return "error not the opponent's turn";
+		if(engine.opponentMove(m) < 0)
+			return "error invalid move " + m.Row + " " + m.Col;
+		moves++;
+		return "ok";
+	}
+
+	/* go [movetime ms] */
+	private String go(String[] words) {
+		if(words.length != 1 && (words.length != 3 || !words[1].equals("movetime")))
+			return "error usage: go [movetime ms]";
+		if(!playing)
+			return "error no game";
+		if(engine.getWinner() != EMPTY)
+			return "error game over";
+		if(toMove() != colour)
+			return "error not the engine's turn";
+		/* A move time given to go is for this move only. */
+		long configured = engine.getMoveTime();
+		if(words.length == 3)
+			engine.setMoveTime(Long.parseLong(words[2]));
+		Move m;
+		try {
+			m = engine.makeMove();
+		} finally {
+			engine.setMoveTime(configured);
+		}
+		moves++;
+		return "move " + m.Row + " " + m.Col;
+	}
+
+	/* The player to move. */
+	private int toMove() {
+		return moves % 2 == 0 ? WHITE : BLACK;
+	}
+}
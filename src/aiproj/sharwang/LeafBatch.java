@@ -0,0 +1,112 @@
+package aiproj.sharwang;
+
+/**
+ *  LeafBatch:
+ *    The leaves below a node one move above the horizon, collected as a
+ *    structure of arrays (one array per feature of the evaluation function)
+ *    so they are scored together instead of one board at a time. The
+ *    features are the capture, side and potential score differences of
+ *    white, which Board keeps up to date from its bitboards on every move.
+ *
+ *    The leaves are scored by a Scorer: with the Vector API, by
+ *    VectorLeafScorer when the jdk.incubator.vector module is present
+ *    (java --add-modules jdk.incubator.vector), otherwise by a scalar loop.
+ *    Both compute the terms in the order of Search.getEval, without fused
+ *    multiply-adds, so the scores are those of Search.getEval.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+final class LeafBatch {
+	/* The features of the leaves, and their scores. */
+	final double[] captures, sides, potentials, scores;
+
+	/* The number of leaves in the batch. */
+	int size;
+
+	/**
+	 *  Scorer:
+	 *    Scores the leaves of a batch by the weighted sum of their features.
+	 */
+	interface Scorer {
+		/**
+		 * Score the leaves of a batch into its scores.
+		 *
+		 * @param batch  the batch
+		 * @param w1     the weight of the capture difference
+		 * @param w2     the weight of the side difference
+		 * @param w3     the weight of the potential difference
+		 * @param sign   1 if the maximizing player is white, otherwise -1
+		 */
+		void score(LeafBatch batch, double w1, double w2, double w3, double sign);
+	}
+
+	/** The scorer with a scalar loop. */
+	static final Scorer SCALAR = new Scorer() {
+		public void score(LeafBatch batch, double w1, double w2, double w3, double sign) {
+			double[] c = batch.captures, s = batch.sides, p = batch.potentials, out = batch.scores;
+			for(int i = 0; i < batch.size; i++) {
+				double eval = 0;
+				eval += w1 * c[i];
+				eval += w2 * s[i];
+				eval += w3 * p[i];
+				out[i] = sign * eval;
+			}
+		}
+	};
+
+	/* The fastest scorer available, found on first use. */
+	private static Scorer best;
+
+	/**
+	 * Create an empty batch.
+	 *
+	 * @param capacity  the largest number of leaves
+	 */
+	LeafBatch(int capacity) {
+		captures = new double[capacity];
+		sides = new double[capacity];
+		potentials = new double[capacity];
+		scores = new double[capacity];
+	}
+
+	/**
+	 * Remove all leaves.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Add the features of a board as a leaf.
+	 *
+	 * @param b  the board
+	 */
+	void add(Board b) {
+		captures[size] = b.getWhiteScore() - b.getBlackScore();
+		sides[size] = b.getWhiteSideScore() - b.getBlackSideScore();
+		potentials[size] = b.getWhitePScore() - b.getBlackPScore();
+		size++;
+	}
+
+	/**
+	 * Get the fastest scorer available: the Vector API one if its module is
+	 * present, otherwise SCALAR.
+	 *
+	 * @return the scorer
+	 */
+	static synchronized Scorer bestScorer() {
+		if(best == null) {
+			try {
+				best = (Scorer)Class.forName("aiproj.sharwang.VectorLeafScorer").getDeclaredConstructor()
+						.newInstance();
+			} catch(ReflectiveOperationException | LinkageError e) {
+				/* Not compiled in, or the module is not present. */
+				best = SCALAR;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,117 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Piece;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  OpeningBook:
+ *    Best moves of opening positions, searched ahead of time by
+ *    OpeningBookBuilder. The book file is memory-mapped read-only and looked
+ *    up in place, so opening a book does not read or parse it.
+ *
+ *    File layout (big-endian):
+ *      header  magic "SWBK", version, number of entries, reserved (4 ints)
+ *      entry   position key (long), move (int), sorted by key
+ *    The key of a position is its canonical hash with the player to move,
+ *    and the move is a cell index in the frame of the canonical form, so
+ *    one entry serves a position and its transpose, see Board.SYMMETRIES.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class OpeningBook implements Piece {
+	/** The first int of a book file. */
+	public static final int MAGIC = 0x5357424B;
+
+	/** The version of the file layout and of the keys; books of version 1 also merged rotations. */
+	public static final int VERSION = 2;
+
+	/** The size of the header and of an entry in bytes. */
+	public static final int HEADER_BYTES = 16, ENTRY_BYTES = 12;
+
+	/* The part of the keys of positions with black to move. */
+	private static final long SIDE_KEY = 0xBB67AE8584CAA73BL;
+
+	/* The mapped file, read with absolute gets only so lookups are thread safe. */
+	private final MappedByteBuffer buffer;
+
+	/* The number of entries. */
+	private final int size;
+
+	/**
+	 * Map a book file.
+	 *
+	 * @param path  the book file
+	 * @throws IOException  if the file can not be read or is not a book
+	 */
+	public OpeningBook(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_BYTES)
+				throw new IOException("Not an opening book: " + path);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if(buffer.getInt(0) != MAGIC)
+			throw new IOException("Not an opening book: " + path);
+		if(buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported opening book version " + buffer.getInt(4) + ": " + path);
+		size = buffer.getInt(8);
+		if(size < 0 || HEADER_BYTES + (long)size * ENTRY_BYTES > buffer.capacity())
+			throw new IOException("Truncated opening book: " + path);
+	}
+
+	/**
+	 * Get the number of positions of the book.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the book move of a position.
+	 *
+	 * @param b       the board
+	 * @param player  the player to move
+	 * @return        the cell index of the move on the board, or TranspositionTable.NO_MOVE
+	 *                if the position is not in the book
+	 */
+	public int lookup(Board b, int player) {
+		int symmetry = b.getCanonicalSymmetry();
+		long key = key(b, player);
+		int low = 0, high = size - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			long k = buffer.getLong(HEADER_BYTES + mid * ENTRY_BYTES);
+			if(k < key)
+				low = mid + 1;
+			else if(k > key)
+				high = mid - 1;
+			else {
+				int move = buffer.getInt(HEADER_BYTES + mid * ENTRY_BYTES + 8);
+				if(move < 0 || move >= b.getDim() * b.getDim())
+					return TranspositionTable.NO_MOVE;
+				move = b.unmapCell(move, symmetry);
+				return (b.getEmptyCells() & (1L << move)) != 0 ? move : TranspositionTable.NO_MOVE;
+			}
+		}
+		return TranspositionTable.NO_MOVE;
+	}
+
+	/**
+	 * Get the book key of a position.
+	 *
+	 * @param b       the board
+	 * @param player  the player to move
+	 * @return        the key
+	 */
+	public static long key(Board b, int player) {
+		return b.getCanonicalHash() ^ (player == BLACK ? SIDE_KEY : 0);
+	}
+}
@@ -0,0 +1,139 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *  OpeningBookBuilder:
+ *    Writes an opening book of the first plies of each dimension. For both
+ *    colours, the positions of the player to move get the move of a deep
+ *    search, and the positions of the opponent are expanded by every reply,
+ *    so the book covers any opponent for the first plies of the game.
+ *
+ *    Usage: java aiproj.sharwang.OpeningBookBuilder file [plies] [movetime ms] [dims...]
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class OpeningBookBuilder implements Piece {
+	/* The book entries: position key to move in the frame of the canonical form. */
+	private final Map<Long, Integer> entries = new HashMap<>();
+
+	/* The number of plies covered, and the search time of a position. */
+	private final int plies;
+	private final long moveTime;
+
+	private OpeningBookBuilder(int plies, long moveTime) {
+		this.plies = plies;
+		this.moveTime = moveTime;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: java aiproj.sharwang.OpeningBookBuilder file [plies] [movetime ms] [dims...]");
+			System.exit(1);
+		}
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long moveTime = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+		int[] dims = {6, 7, 8};
+		if(args.length > 3) {
+			dims = new int[args.length - 3];
+			for(int i = 3; i < args.length; i++)
+				dims[i - 3] = Integer.parseInt(args[i]);
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(plies, moveTime);
+		for(int dim : dims) {
+			for(int player : new int[] {WHITE, BLACK}) {
+				builder.expand(new Board(dim), player, WHITE, new ArrayList<Move>());
+				System.out.println("dim " + dim + " " + (player == WHITE ? "white" : "black")
+						+ ": " + builder.entries.size() + " positions");
+			}
+		}
+		builder.write(args[0]);
+		System.exit(0);
+	}
+
+	/* Add the positions reached from a position within the plies of the book.
+	   Moves holds the moves made to reach the position. */
+	private void expand(Board b, int player, int toMove, List<Move> moves) {
+		if(moves.size() >= plies || b.isComplete())
+			return;
+		if(toMove == player) {
+			long key = OpeningBook.key(b, toMove);
+			if(entries.containsKey(key))
+				return;
+			Move m = search(b.getDim(), player, moves);
+			entries.put(key, b.mapCell(m.Row * b.getDim() + m.Col, b.getCanonicalSymmetry()));
+			follow(b, player, m, moves);
+		} else {
+			/* Every reply of the opponent, once per child and its transpose. */
+			Set<Long> children = new HashSet<>();
+			long empty = b.getEmptyCells();
+			while(empty != 0) {
+				int cell = Long.numberOfTrailingZeros(empty);
+				empty &= empty - 1;
+				Move m = new Move();
+				m.P = toMove;
+				m.Row = cell / b.getDim();
+				m.Col = cell % b.getDim();
+				b.makeMove(m);
+				boolean first = children.add(b.getCanonicalHash());
+				b.unmakeMove();
+				if(first)
+					follow(b, player, m, moves);
+			}
+		}
+	}
+
+	/* Make a move and expand the child. */
+	private void follow(Board b, int player, Move m, List<Move> moves) {
+		b.makeMove(m);
+		moves.add(m);
+		expand(b, player, Search.changePlayer(m.P), moves);
+		moves.remove(moves.size() - 1);
+		b.unmakeMove();
+	}
+
+	/* The move of a deep search of a position. */
+	private Move search(int dim, int player, List<Move> moves) {
+		SharWang p = new SharWang();
+		p.setBook(null);
+		p.init(dim, player);
+		p.setMoveTime(moveTime);
+		for(Move m : moves)
+			p.play(m);
+		return p.searchMove();
+	}
+
+	/* Write the entries sorted by key. */
+	private void write(String file) throws IOException {
+		long[] keys = new long[entries.size()];
+		int n = 0;
+		for(long key : entries.keySet())
+			keys[n++] = key;
+		Arrays.sort(keys);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(keys.length);
+			out.writeInt(0);
+			for(long key : keys) {
+				out.writeLong(key);
+				out.writeInt(entries.get(key));
+			}
+		}
+	}
+}
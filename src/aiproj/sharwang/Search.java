@@ -0,0 +1,647 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.Arrays;
+
+/**
+ *  Search:
+ *    The alpha-beta pruning search below the root, on one mutable board.
+ *    A search is used by one thread at a time, so parallel searches each
+ *    have their own Search object and board, and share the transposition table.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+class Search implements Piece {
+	/* The board searched, moves are made and taken back on it. */
+	private final Board board;
+
+	/* The dimension of the board. */
+	private final int dim;
+
+	/* The player the scores are given for, i.e. the maximizing player. */
+	private final int player;
+
+	/* The shared transposition table, the entry probes read into, and the age
+	   the entries are stored with, see TranspositionTable.newSearch(). */
+	private final TranspositionTable table;
+	private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
+	private int age;
+
+	/*
+	 * Define weights for evaluation function:
+	 *  Eval = w1 * captureScore + w2 * sideScore + w3 * potentialScore
+	 */
+	private double w1, w2, w3;
+
+	/* The part of the transposition table keys identifying the weights. */
+	private long evalKey;
+
+	/* Whether the score is the exact final capture difference, and its part of the keys. */
+	private boolean exact;
+	private static final long EXACT_KEY = 0x3C6EF372FE94F82BL;
+
+	/* The part of the transposition table keys of positions with black to move,
+	   and of the searches of black, whose scores are those of white negated. */
+	private static final long SIDE_KEY = 0x6A09E667F3BCC909L;
+	private static final long MAXIMIZING_KEY = 0x510E527FADE682D1L;
+
+	/* The deadline of the current search in System.nanoTime(), and whether it has passed. */
+	private volatile long deadline = Long.MAX_VALUE;
+	private boolean aborted;
+
+	/* Set by another thread to abort the search. */
+	private volatile boolean stopped;
+
+	/*
+	 * Whether to search as a principal variation search: the first child of
+	 * a node with the full window, the other children with a null window
+	 * which only tells whether they beat the first one, and again with the
+	 * full window if they do.
+	 */
+	private boolean pvs;
+
+	/* The score of the last root search, see setRootScore(). */
+	private double rootScore;
+
+	/*
+	 * The scorer of the leaves below the nodes at depth 1, scored together as
+	 * a batch instead of one by one, or null to evaluate each leaf on its
+	 * own. The first child is searched on its own, as it is the one most
+	 * likely to cut off; the batch of the others is filled before any is
+	 * scored, so it pays for the children a later cut-off would have skipped.
+	 */
+	private LeafBatch.Scorer scorer;
+	private final LeafBatch leaves = new LeafBatch(MAX_MOVES);
+
+	/*
+	 * Move ordering. The moves of a node are the best move from the
+	 * transposition table, then moves that capture, then the two killer moves
+	 * of the depth (quiet moves which last caused a cut-off at that depth),
+	 * then the other moves by their history score (how often and how deep
+	 * they caused cut-offs). The buffers hold the moves of each depth.
+	 */
+	private static final int MAX_MOVES = Board.MAX_DIM * Board.MAX_DIM;
+	private static final int TT_MOVE_SCORE = Integer.MAX_VALUE, CAPTURE_SCORE = 1 << 30,
+			KILLER_SCORE = 1 << 29, HISTORY_MAX = 1 << 28;
+	private final int[][] moveBuffers = new int[MAX_MOVES + 1][MAX_MOVES];
+	private final int[][] scoreBuffers = new int[MAX_MOVES + 1][MAX_MOVES];
+	private final int[][] killers = new int[MAX_MOVES + 1][2];
+	private final int[][] history = new int[2][MAX_MOVES];
+
+	/* The move made by the node of each depth, reused so nodes allocate nothing. */
+	private final Move[] plyMoves = new Move[MAX_MOVES + 1];
+
+	/* The number of nodes searched, the deadline is checked every TIME_CHECK_NODES + 1 nodes. */
+	private long nodes;
+
+	/* Statistics since start(): leaves evaluated, cut-offs, cut-offs by the first move,
+	   transposition table probes and hits. */
+	private long leafEvals, cutoffs, firstMoveCutoffs, tableProbes, tableHits;
+	private static final int TIME_CHECK_NODES = 1023;
+
+	/**
+	 * Initialize a search.
+	 *
+	 * @param board   the board to search on
+	 * @param player  the maximizing player
+	 * @param table   the transposition table
+	 */
+	Search(Board board, int player, TranspositionTable table) {
+		this.board = board;
+		this.dim = board.getDim();
+		this.player = player;
+		this.table = table;
+		for(int i = 0; i < plyMoves.length; i++)
+			plyMoves[i] = new Move();
+		clearHeuristics();
+	}
+
+	/**
+	 * Forget the killer moves and the history scores, so a search does not
+	 * depend on the searches before it.
+	 */
+	void clearHeuristics() {
+		for(int[] k : killers)
+			Arrays.fill(k, TranspositionTable.NO_MOVE);
+		for(int[] h : history)
+			Arrays.fill(h, 0);
+	}
+
+	/**
+	 * Get the board searched.
+	 *
+	 * @return the board
+	 */
+	Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Set how the leaves below the nodes at depth 1 are evaluated.
+	 *
+	 * @param scorer  the scorer of the leaves as a batch, or null to evaluate them one by one
+	 */
+	void setLeafScorer(LeafBatch.Scorer scorer) {
+		this.scorer = scorer;
+	}
+
+	/**
+	 * Set the weights of the evaluation function.
+	 *
+	 * @param ws  the weights w1, w2 and w3
+	 */
+	void setWeights(double[] ws) {
+		exact = false;
+		w1 = ws[0];
+		w2 = ws[1];
+		w3 = ws[2];
+		evalKey = Double.doubleToLongBits(w1) * 0x9E3779B97F4A7C15L
+				^ Double.doubleToLongBits(w2) * 0xC2B2AE3D27D4EB4FL
+				^ Double.doubleToLongBits(w3) * 0x165667B19E3779F9L;
+	}
+
+	/**
+	 * Score the boards by the final capture difference instead of the weights,
+	 * to solve the rest of the game. The search must then be as deep as the
+	 * number of empty cells, so the leaves are the ends of the game.
+	 */
+	void setExact() {
+		exact = true;
+		evalKey = EXACT_KEY;
+	}
+
+	/**
+	 * Check whether the boards are scored by the final capture difference.
+	 *
+	 * @return true if the search solves the game
+	 */
+	boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Set the age the search stores its table entries with.
+	 *
+	 * @param age  the age, from TranspositionTable.newSearch()
+	 */
+	void setAge(int age) {
+		this.age = age;
+	}
+
+	/**
+	 * Set whether to search as a principal variation search.
+	 *
+	 * @param pvs  true for a principal variation search, false for plain alpha-beta
+	 */
+	void setPvs(boolean pvs) {
+		this.pvs = pvs;
+	}
+
+	/**
+	 * Check whether the search is a principal variation search.
+	 *
+	 * @return true for a principal variation search
+	 */
+	boolean isPvs() {
+		return pvs;
+	}
+
+	/**
+	 * Record the score of a root search, which iterative deepening centres the
+	 * window of the next depth on.
+	 *
+	 * @param score  the best score of the root children
+	 */
+	void setRootScore(double score) {
+		rootScore = score;
+	}
+
+	/**
+	 * Get the score of the last root search.
+	 *
+	 * @return the best score of the root children
+	 */
+	double getRootScore() {
+		return rootScore;
+	}
+
+	/**
+	 * Start a new search which gives up at a deadline.
+	 *
+	 * @param deadline  the deadline in System.nanoTime()
+	 */
+	void start(long deadline) {
+		this.deadline = deadline;
+		aborted = false;
+		stopped = false;
+		nodes = 0;
+		leafEvals = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		/* Age the history, so recent cut-offs weigh more. */
+		for(int[] h : history) {
+			for(int i = 0; i < h.length; i++)
+				h[i] >>= 1;
+		}
+	}
+
+	/**
+	 * Change the deadline of the running search, from any thread.
+	 *
+	 * @param deadline  the deadline in System.nanoTime()
+	 */
+	void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Get the best move of the board from the transposition table.
+	 *
+	 * @param player  the player to move
+	 * @return        the cell index of the best move, or NO_MOVE if it is unknown
+	 */
+	int getBestMove(int player) {
+		int symmetry = board.getCanonicalSymmetry();
+		if(!table.probe(hashKey(board, symmetry, player), entry) || entry.move == TranspositionTable.NO_MOVE)
+			return TranspositionTable.NO_MOVE;
+		int move = board.unmapCell(entry.move, symmetry);
+		if((board.getEmptyCells() & (1L << move)) == 0)
+			return TranspositionTable.NO_MOVE;
+		return move;
+	}
+
+	/**
+	 * Abort the search from another thread, as if the deadline had passed.
+	 */
+	void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Check whether the search has given up because the deadline passed.
+	 * The scores returned since then are meaningless.
+	 *
+	 * @return true if the search is aborted
+	 */
+	boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Get the number of nodes searched since start().
+	 *
+	 * @return the number of nodes
+	 */
+	long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Get the number of leaves evaluated since start().
+	 *
+	 * @return the number of evaluations
+	 */
+	long getLeafEvals() {
+		return leafEvals;
+	}
+
+	/**
+	 * Get the number of cut-offs since start().
+	 *
+	 * @return the number of cut-offs
+	 */
+	long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Get the number of cut-offs by the first move of a node since start().
+	 *
+	 * @return the number of first move cut-offs
+	 */
+	long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * Get the number of transposition table probes since start().
+	 *
+	 * @return the number of probes
+	 */
+	long getTableProbes() {
+		return tableProbes;
+	}
+
+	/**
+	 * Get the number of transposition table probes which found the position since start().
+	 *
+	 * @return the number of hits
+	 */
+	long getTableHits() {
+		return tableHits;
+	}
+
+	/**
+	 * Get the score of the board of the search, from the evaluation function.
+	 *
+	 * @return the score of the board for the maximizing player
+	 */
+	double evaluate() {
+		return getEval(board);
+	}
+
+	/**
+	 * Impletation of alpha-beta pruning algorithm.
+	 *
+	 * @param depth   the depth left
+	 * @param alpha   the score the maximizing player is assured of
+	 * @param beta    the score the minimizing player is assured of
+	 * @param player  the player to move
+	 * @return        the score of the board
+	 */
+	double alphabeta(int depth, double alpha, double beta, int player) {
+		Board b = board;
+		/* Return the value of evaluation function if reach the terminal node. */
+		if(depth == 0 || b.isComplete()) {
+			leafEvals++;
+			return getEval(b);
+		}
+		/* Give up if time is up, the caller ignores the score. */
+		if((++nodes & TIME_CHECK_NODES) == 0 && (stopped || System.nanoTime() >= deadline))
+			aborted = true;
+		if(aborted)
+			return 0;
+		/* Use the transposition table if the position has been searched deep enough.
+		   Positions are looked up by their canonical form, and moves are stored in its frame. */
+		int symmetry = b.getCanonicalSymmetry();
+		long key = hashKey(b, symmetry, player);
+		int ttMove = TranspositionTable.NO_MOVE;
+		tableProbes++;
+		if(table.probe(key, entry)) {
+			tableHits++;
+			if(entry.move != TranspositionTable.NO_MOVE)
+				ttMove = b.unmapCell(entry.move, symmetry);
+			if(entry.depth >= depth) {
+				if(entry.bound == TranspositionTable.EXACT
+						|| (entry.bound == TranspositionTable.LOWER && entry.score >= beta)
+						|| (entry.bound == TranspositionTable.UPPER && entry.score <= alpha))
+					return entry.score;
+			}
+		}
+        /* Otherwise, continue search. */
+		double alphaOrig = alpha, betaOrig = beta, score;
+		int move, bestMove = TranspositionTable.NO_MOVE, bound;
+		boolean maximizing = player == this.player;
+		int[] moves = moveBuffers[depth], scores = scoreBuffers[depth];
+		int n = generateMoves(b, depth, player, ttMove, moves, scores);
+		Move m = plyMoves[depth];
+		m.P = player;
+		boolean batched = false;
+		/* For each child board, in order. */
+		for(int i = 0; i < n; i++) {
+			/* If the children are leaves and the first did not cut off, score the others together. */
+			if(i == 1 && depth == 1 && scorer != null) {
+				scoreLeaves(b, moves, scores, 1, n, m);
+				batched = true;
+			}
+			if(batched) {
+				move = moves[i];
+				score = leaves.scores[i - 1];
+			} else {
+				move = nextMove(moves, scores, i, n);
+				/* Make the child move on the board. */
+				m.Row = move / dim;
+				m.Col = move % dim;
+				b.makeMove(m);
+				score = searchChild(i, depth-1, alpha, beta, maximizing, changePlayer(player));
+				b.unmakeMove();
+			}
+			if(maximizing) {
+				/* Select maximum alpha. */
+				if(score > alpha) {
+					alpha = score;
+					bestMove = move;
+				}
+			} else {
+				/* Select minimum beta. */
+				if(score < beta) {
+					beta = score;
+					bestMove = move;
+				}
+			}
+			/* beta or alpha cut-off. */
+			if(beta <= alpha) {
+				cutoffs++;
+				if(i == 0)
+					firstMoveCutoffs++;
+				if(!aborted && scores[i] < CAPTURE_SCORE)
+					updateQuietCutoff(depth, player, move);
+				break;
+			}
+		}
+		if(aborted)
+			return 0;
+		if(bestMove != TranspositionTable.NO_MOVE)
+			bestMove = b.mapCell(bestMove, symmetry);
+		if(maximizing) {
+			if(alpha >= beta)
+				bound = TranspositionTable.LOWER;
+			else if(alpha <= alphaOrig)
+				bound = TranspositionTable.UPPER;
+			else
+				bound = TranspositionTable.EXACT;
+			table.store(key, depth, bound, alpha, bestMove, age);
+			return alpha;
+		} else {
+			if(beta <= alpha)
+				bound = TranspositionTable.UPPER;
+			else if(beta >= betaOrig)
+				bound = TranspositionTable.LOWER;
+			else
+				bound = TranspositionTable.EXACT;
+			table.store(key, depth, bound, beta, bestMove, age);
+			return beta;
+		}
+	}
+
+	/**
+	 * Search the i-th child of a node, with a null window first unless it is
+	 * the first child of a principal variation search. A child beating the
+	 * null window is searched again with the full window.
+	 *
+	 * @param i           the index of the child in search order
+	 * @param depth       the depth left below the node
+	 * @param alpha       the alpha of the node
+	 * @param beta        the beta of the node
+	 * @param maximizing  whether the node is of the maximizing player
+	 * @param player      the player to move in the child
+	 * @return            the score of the child
+	 */
+	double searchChild(int i, int depth, double alpha, double beta, boolean maximizing, int player) {
+		if(i == 0 || !pvs)
+			return alphabeta(depth, alpha, beta, player);
+		double score;
+		if(maximizing) {
+			score = alphabeta(depth, alpha, Math.nextUp(alpha), player);
+			if(!aborted && score > alpha && score < beta)
+				score = alphabeta(depth, alpha, beta, player);
+		} else {
+			score = alphabeta(depth, Math.nextDown(beta), beta, player);
+			if(!aborted && score < beta && score > alpha)
+				score = alphabeta(depth, alpha, beta, player);
+		}
+		return score;
+	}
+
+	/*
+	 * Sort the moves from index from of a node at depth 1 into search order,
+	 * and score the leaf of each move, in that order, into the leaf batch.
+	 */
+	private void scoreLeaves(Board b, int[] moves, int[] scores, int from, int n, Move m) {
+		leaves.clear();
+		for(int i = from; i < n; i++) {
+			int move = nextMove(moves, scores, i, n);
+			m.Row = move / dim;
+			m.Col = move % dim;
+			b.makeMove(m);
+			leaves.add(b);
+			b.unmakeMove();
+		}
+		leafEvals += n - from;
+		if(exact)
+			scorer.score(leaves, 1, 0, 0, player == WHITE ? 1 : -1);
+		else
+			scorer.score(leaves, w1, w2, w3, player == WHITE ? 1 : -1);
+	}
+
+	/*
+	 * Generate the moves of a node, i.e. the empty cells, with their ordering
+	 * scores. Returns the number of moves.
+	 */
+	private int generateMoves(Board b, int depth, int player, int ttMove, int[] moves, int[] scores) {
+		long empty = b.getEmptyCells();
+		int[] h = history[player == WHITE ? 0 : 1], k = killers[depth];
+		int n = 0, move, score;
+		while(empty != 0) {
+			move = Long.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			if(move == ttMove)
+				score = TT_MOVE_SCORE;
+			else if(b.isCaptureMove(move / dim, move % dim, player))
+				score = CAPTURE_SCORE;
+			else if(move == k[0])
+				score = KILLER_SCORE + 1;
+			else if(move == k[1])
+				score = KILLER_SCORE;
+			else
+				score = h[move];
+			moves[n] = move;
+			scores[n++] = score;
+		}
+		return n;
+	}
+
+	/* Select the move with the highest score among moves i..n-1 and swap it to i.
+	   Ties keep the row-major order of generation. */
+	private static int nextMove(int[] moves, int[] scores, int i, int n) {
+		int best = i;
+		for(int j = i + 1; j < n; j++) {
+			if(scores[j] > scores[best])
+				best = j;
+		}
+		int move = moves[best], score = scores[best];
+		/* Shift instead of swap, so the other moves keep their order. */
+		System.arraycopy(moves, i, moves, i + 1, best - i);
+		System.arraycopy(scores, i, scores, i + 1, best - i);
+		moves[i] = move;
+		scores[i] = score;
+		return move;
+	}
+
+	/* Remember a quiet move that caused a cut-off as a killer and in the history. */
+	private void updateQuietCutoff(int depth, int player, int move) {
+		int[] k = killers[depth], h = history[player == WHITE ? 0 : 1];
+		if(k[0] != move) {
+			k[1] = k[0];
+			k[0] = move;
+		}
+		h[move] = Math.min(HISTORY_MAX - 1, h[move] + depth * depth);
+	}
+
+	/**
+	 * Search the root children in order, starting at a given child and wrapping
+	 * around. This is the root of the helper threads of a Lazy SMP search,
+	 * which only pass on their results through the transposition table.
+	 *
+	 * @param depth  the depth of the search
+	 * @param moves  the root moves as cell indexes
+	 * @param first  the index in moves of the child searched first
+	 */
+	void searchRoot(int depth, int[] moves, int first) {
+		double alpha = -Double.MAX_VALUE, score;
+		Move m = new Move();
+		m.P = player;
+		for(int i = 0; i < moves.length && !aborted; i++) {
+			int move = moves[(first + i) % moves.length];
+			m.Row = move / dim;
+			m.Col = move % dim;
+			board.makeMove(m);
+			score = alphabeta(depth-1, alpha, Double.MAX_VALUE, changePlayer(player));
+			board.unmakeMove();
+			if(!aborted && score > alpha)
+				alpha = score;
+		}
+	}
+
+	/**
+	 * Return the player ID of opponent.
+	 *
+	 * @param player  a player ID
+	 * @return        the ID of the other player
+	 */
+	static int changePlayer(int player) {
+		if(player == WHITE)
+			return BLACK;
+		else
+			return WHITE;
+	}
+
+	/*
+	 * The transposition table key of a position, the hash of the board under a
+	 * symmetry (its canonical form, so a position and its transpose share an
+	 * entry). The key includes the player to move, and the weights
+	 * and the maximizing player, since scores of other weights or of the
+	 * other player's search are not comparable.
+	 */
+	private long hashKey(Board b, int symmetry, int player) {
+		return b.getHash(symmetry) ^ evalKey ^ (player == BLACK ? SIDE_KEY : 0)
+				^ (this.player == BLACK ? MAXIMIZING_KEY : 0);
+	}
+
+	/*
+	 * Get the score of our defined evaluation function.
+	 * Then our evaluation function is:
+	 *   Eval = w1 * capturedScore + w2 * sideScore + w3 * potentialScore
+	 * In an exact search it is the capture difference of the finished game.
+	 */
+	private double getEval(Board b) {
+        int sign;
+        if (player == WHITE)
+            sign = 1;
+        else
+            sign = -1;
+        if(exact)
+            return sign * (b.getWhiteScore() - b.getBlackScore());
+        double eval = 0;
+        eval += w1 * (b.getWhiteScore() - b.getBlackScore());
+        eval += w2 * (b.getWhiteSideScore() - b.getBlackSideScore());
+        eval += w3 * (b.getWhitePScore() - b.getBlackPScore());
+        return sign * eval;
+    }
+}
@@ -0,0 +1,66 @@
+package aiproj.sharwang;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  SearchEvent:
+ *    A Flight Recorder event of the search of one move, with the counters
+ *    of its SearchStats. The event is only filled in when a recording has
+ *    it enabled, e.g. java -XX:StartFlightRecording:filename=games.jfr.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+@Name("aiproj.sharwang.Search")
+@Label("Search")
+@Category("SharWang")
+@Description("The search of one move")
+@StackTrace(false)
+class SearchEvent extends Event {
+	@Label("Dimension")
+	int dim;
+
+	@Label("Player")
+	int player;
+
+	@Label("Pieces")
+	@Description("The number of pieces on the board before the move")
+	int pieces;
+
+	@Label("Row")
+	int row;
+
+	@Label("Column")
+	int col;
+
+	@Label("Depth")
+	int depth;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Leaf Evaluations")
+	long leafEvals;
+
+	@Label("Cut-offs")
+	long cutoffs;
+
+	@Label("First Move Cut-offs")
+	long firstMoveCutoffs;
+
+	@Label("Table Probes")
+	long ttProbes;
+
+	@Label("Table Hits")
+	long ttHits;
+
+	@Label("Nodes per Second")
+	double nodesPerSecond;
+}
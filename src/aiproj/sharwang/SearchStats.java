@@ -0,0 +1,142 @@
+package aiproj.sharwang;
+
+/**
+ *  SearchStats:
+ *    The statistics of the search of one move: the work of all the searches
+ *    of the move added up (the main search, the helper threads and the root
+ *    children searched in parallel), the depth completed and the time.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class SearchStats {
+	/* The counters of the searches added. */
+	private long nodes, leafEvals, cutoffs, firstMoveCutoffs, ttProbes, ttHits;
+
+	/* The depth completed, and the time of the move in nanoseconds. */
+	private int depth;
+	private long nanos;
+
+	/* Add the counters of a search since it started. Parallel searches add at once. */
+	synchronized void add(Search s) {
+		nodes += s.getNodes();
+		leafEvals += s.getLeafEvals();
+		cutoffs += s.getCutoffs();
+		firstMoveCutoffs += s.getFirstMoveCutoffs();
+		ttProbes += s.getTableProbes();
+		ttHits += s.getTableHits();
+	}
+
+	/* Record the depth completed and the time, once the move is found. */
+	void finish(int depth, long nanos) {
+		this.depth = depth;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Get the number of nodes searched, not counting the leaves.
+	 *
+	 * @return the number of inner nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Get the number of leaves scored by the evaluation function.
+	 *
+	 * @return the number of evaluations
+	 */
+	public long getLeafEvals() {
+		return leafEvals;
+	}
+
+	/**
+	 * Get the number of nodes cut off by alpha-beta pruning.
+	 *
+	 * @return the number of cut-offs
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Get the number of cut-offs by the first move searched of a node.
+	 *
+	 * @return the number of first move cut-offs
+	 */
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * Get the share of the cut-offs made by the first move, a measure of the move ordering.
+	 *
+	 * @return the first move cut-offs per cut-off, 0 if there were none
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double)firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * Get the number of transposition table probes.
+	 *
+	 * @return the number of probes
+	 */
+	public long getTableProbes() {
+		return ttProbes;
+	}
+
+	/**
+	 * Get the number of transposition table probes which found the position.
+	 *
+	 * @return the number of hits
+	 */
+	public long getTableHits() {
+		return ttHits;
+	}
+
+	/**
+	 * Get the depth of the last completed iteration of the search.
+	 *
+	 * @return the depth, 0 if the move was not searched
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Get the time of the move.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Get the time of the move.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public double getMillis() {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Get the speed of the search, counting inner nodes and leaves.
+	 *
+	 * @return the nodes per second, 0 if no time passed
+	 */
+	public double getNodesPerSecond() {
+		return nanos == 0 ? 0 : (nodes + leafEvals) / (nanos / 1e9);
+	}
+
+	public String toString() {
+		return String.format("depth %d, %d nodes, %d leaves, %.0f nodes/s, %d cut-offs (%.1f%% first move), "
+				+ "%d/%d table hits, %.1f ms", depth, nodes, leafEvals, getNodesPerSecond(), cutoffs,
+				100 * getFirstMoveCutoffRate(), ttHits, ttProbes, getMillis());
+	}
+}
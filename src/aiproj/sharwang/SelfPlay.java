@@ -0,0 +1,165 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  SelfPlay:
+ *    Generates training data by playing SharWang against itself. Games are
+ *    played in parallel, each game opens with a few random moves so the
+ *    games differ, and the positions after every move are written with the
+ *    result of the game in the format of TrainingData. The records of a
+ *    finished game go through a bounded queue to one writer thread, which
+ *    writes them through a buffer to a file channel, so memory stays bounded
+ *    however many games are played.
+ *
+ *    Usage: java aiproj.sharwang.SelfPlay file games [dim] [threads] [random moves] [depth]
+ *    The players solve endgames exactly as in a game, which takes most of
+ *    the time; -Dsharwang.endgame=0 trades that for about six times as many
+ *    positions per second.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class SelfPlay implements Piece {
+	/* The number of finished games waiting for the writer. */
+	private static final int QUEUE_GAMES = 256;
+
+	/* The size of the write buffer. */
+	private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+	/* The records of a game, queued after the last one to stop the writer. */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.err.println("Usage: java aiproj.sharwang.SelfPlay file games [dim] [threads] [random moves] [depth]");
+			System.exit(1);
+		}
+		final int games = Integer.parseInt(args[1]);
+		final int dim = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		final int randomMoves = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+		final int depth = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+		final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_GAMES);
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		final SplittableRandom seeds = new SplittableRandom(dim * 1000003L + games);
+		for(int i = 0; i < games; i++) {
+			final int game = i;
+			final SplittableRandom random = seeds.split();
+			pool.execute(new Runnable() {
+				public void run() {
+					try {
+						queue.put(game(game, dim, randomMoves, depth, random));
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		long records;
+		try(FileChannel channel = FileChannel.open(Paths.get(args[0]), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Thread closer = new Thread(new Runnable() {
+				public void run() {
+					try {
+						pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+						queue.put(END);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			closer.start();
+			records = write(channel, queue);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d positions in %.1f s (%.0f positions/s)%n", games, records, seconds,
+				records / seconds);
+		System.exit(0);
+	}
+
+	/* Write the queued games to the channel until END. Returns the number of records written. */
+	private static long write(FileChannel channel, BlockingQueue<ByteBuffer> queue)
+			throws IOException, InterruptedException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+		TrainingData.putHeader(buffer);
+		long bytes = 0;
+		ByteBuffer game;
+		while((game = queue.take()) != END) {
+			if(buffer.remaining() < game.remaining())
+				bytes += flush(channel, buffer);
+			buffer.put(game);
+		}
+		bytes += flush(channel, buffer);
+		return TrainingData.records(bytes);
+	}
+
+	/* Write out and empty the buffer. Returns the number of bytes written. */
+	private static int flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		int bytes = buffer.remaining();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+		return bytes;
+	}
+
+	/* Play one game and return its records, ready to be read. */
+	private static ByteBuffer game(int game, int dim, int randomMoves, int depth, SplittableRandom random) {
+		SharWang[] players = {new SharWang(), new SharWang()};
+		for(int i = 0; i < 2; i++) {
+			players[i].setBook(null);
+			players[i].init(dim, i == 0 ? WHITE : BLACK);
+			players[i].setMaxDepth(depth);
+			players[i].setMoveTime(Long.MAX_VALUE / 2000000L);
+		}
+		/* The records of the positions after each move, the result is set at the end. */
+		Board board = new Board(dim);
+		ByteBuffer records = ByteBuffer.allocate(dim * dim * TrainingData.RECORD_BYTES);
+		int ply = 0, turn = 0;
+		Move m;
+		while(!board.isComplete()) {
+			if(ply < randomMoves) {
+				/* A random opening move, played on both players. */
+				long empty = board.getEmptyCells();
+				for(int k = random.nextInt(Long.bitCount(empty)); k > 0; k--)
+					empty &= empty - 1;
+				int cell = Long.numberOfTrailingZeros(empty);
+				m = new Move();
+				m.P = turn == 0 ? WHITE : BLACK;
+				m.Row = cell / dim;
+				m.Col = cell % dim;
+				players[turn].play(m);
+			} else
+				m = players[turn].makeMove();
+			players[1 - turn].opponentMove(m);
+			board.makeMove(m);
+			ply++;
+			turn = 1 - turn;
+			TrainingData.putRecord(records, game, board, ply, turn == 0 ? WHITE : BLACK, EMPTY);
+		}
+		for(SharWang p : players)
+			p.close();
+		int result = board.getWinner();
+		for(int i = 0; i < ply; i++)
+			TrainingData.setResult(records, i, result);
+		records.flip();
+		return records;
+	}
+}
@@ -1,6 +1,18 @@
 package aiproj.sharwang;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import aiproj.squatter.*;
 
 /**
@@ -29,14 +41,109 @@ public class SharWang implements Player, Piece {
     /* The last move made by opponent. */
     private Move lastOpponentMove = new Move();
 
+	/* The search on the game board. */
+	private Search search;
+
+	/* The weights of the current move. */
+	private double[] ws;
+
+	/*
+	 * The weights, the opening book, the transposition tables and the threads,
+	 * shared with other players if given to the constructor, otherwise made by
+	 * init() from the settings of this player, with one table of its own.
+	 */
+	private Engine engine;
+	private final boolean sharedEngine;
+
+	/* The transposition table taken from the engine, its size in entries and its replacement policy. */
+	private TranspositionTable table;
+	private int age;  // The age of the entries of the search of the current move.
+	private int tableEntries = Integer.getInteger("sharwang.tt.entries", 1 << 18);
+	private int tablePolicy = "always".equals(System.getProperty("sharwang.tt.replace"))
+			? TranspositionTable.REPLACE_ALWAYS : TranspositionTable.REPLACE_DEPTH;
+
+	/* The time for a move in milliseconds, and the maximum search depth. */
+	private long moveTime = Long.getLong("sharwang.movetime", 1000);
+	private int maxDepth = Integer.getInteger("sharwang.maxdepth", Integer.MAX_VALUE);
+
+	/* The deadline of the current search in System.nanoTime(), and whether it has passed. */
+	private long deadline;
+	private volatile boolean aborted;
+
 	/*
-	 * Define weights for evaluation function:
-	 *  Eval = w1 * captureScore + w2 * sideScore + w3 * potentialScore
+	 * The number of threads searching the root children, 1 for a serial search.
+	 * The threads are those of a fork/join pool of the engine.
 	 */
-    private double w1, w2, w3;
+	private int parallelism = Integer.getInteger("sharwang.parallelism", 1);
+
+	/*
+	 * The search of each thread of the parallel root search of a move, on its
+	 * own copy of the board, made when the thread searches its first root
+	 * child and reused for the children after it, and the list of them.
+	 */
+	private ThreadLocal<Search> workers;
+	private final List<Search> workerSearches = Collections.synchronizedList(new ArrayList<Search>());
+
+	/*
+	 * The number of threads of a Lazy SMP search, 1 for none. The helper
+	 * threads, from the engine, search the same position at staggered depths
+	 * and only pass on their work through the transposition table. A Lazy
+	 * SMP search takes precedence over a parallel root search. Helpers the
+	 * engine has no free thread for are left out.
+	 */
+	private int threads = Integer.getInteger("sharwang.threads", 1);
+
+	/* Whether to search on the opponent's time, and the background search running. */
+	private boolean ponder = Boolean.getBoolean("sharwang.ponder");
+	private Ponder pondering;
+
+	/* The most move times a background search runs before the opponent's move
+	   arrives, so a player which is never told the move does not hold a thread. */
+	private static final int PONDER_MOVES = 10;
+
+	/*
+	 * Whether to search as a principal variation search, and the half width
+	 * of the aspiration window: each depth of iterative deepening is first
+	 * searched with a window of that half width around the score of the
+	 * previous depth, and again with the full window if the score falls
+	 * outside. A half width of 0 searches every depth with the full window.
+	 */
+	private boolean pvs = Boolean.getBoolean("sharwang.pvs");
+	private double aspiration = Double.parseDouble(System.getProperty("sharwang.aspiration", "0.5"));
+
+	/*
+	 * Whether the leaves below the nodes at depth 1 are scored together as a
+	 * batch, with the Vector API if java runs with --add-modules
+	 * jdk.incubator.vector, otherwise with a scalar loop.
+	 */
+	private boolean batchEval = Boolean.getBoolean("sharwang.batch");
+
+	/*
+	 * The largest number of empty cells solved exactly: the search runs to the
+	 * end of the game and scores the final capture difference, instead of the
+	 * learned evaluation function.
+	 */
+	private int endgameEmpty = Integer.getInteger("sharwang.endgame", DEFAULT_ENDGAME_EMPTY);
+
+	/* The default of endgameEmpty. After its warm up, EndgameCalibration with 20
+	   positions finds 14 on each of dimensions 6, 7 and 8 for a one second move:
+	   the slowest of 14 empty cells takes 243, 315 and 374 ms, of 15 empty cells
+	   722, 527 and 582 ms, against a budget of 500 ms. */
+	static final int DEFAULT_ENDGAME_EMPTY = 14;
+
+	/* The opening book file, and the weights file written by WeightTrainer, of an engine of its own. */
+	private String bookPath = System.getProperty("sharwang.book");
+	private String weightsPath = System.getProperty("sharwang.weights");
+
+	/* The files the engine of its own was made from, it is kept across games while they stay the same. */
+	private String engineBookPath, engineWeightsPath;
+
+	/* The statistics of the search of the last move, and the depth it completed. */
+	private SearchStats stats = new SearchStats();
+	private int lastDepth;
 
     /* An array of weights optimized by gradient decent algorithm for round 16 ~ 30. */
-	private double[][] weights = new double[][] {
+	static final double[][] DEFAULT_WEIGHTS = new double[][] {
             {0.642656, -0.025575, 0.007332},  // round 16
             {0.739764, -0.035820, -0.004044}, // round 17
             {0.747621, -0.022536, 0.000874},  // round 18
@@ -53,6 +160,26 @@ public class SharWang implements Player, Piece {
             {0.848400, -0.002242, 0.001904},  // round 29
             {0.843682, 0.007818, 0.004519}};  // round 30
 
+	/**
+	 * Create a player with an engine of its own, see setBook() and setWeightsFile().
+	 */
+	public SharWang() {
+		sharedEngine = false;
+	}
+
+	/**
+	 * Create a player sharing an engine with other players, e.g. one per game
+	 * of many games played at once. The book and the weights files of the
+	 * player are not used.
+	 *
+	 * @param engine  the engine
+	 */
+	public SharWang(Engine engine) {
+		this.engine = engine;
+		sharedEngine = true;
+		table = engine.takeTable();
+	}
+
 	/**
 	 * Initialize a Player.
 	 *
@@ -61,12 +188,16 @@ public class SharWang implements Player, Piece {
 	 * @return   1 if valid, otherwise -1
 	 */
 	public int init(int n, int p) {
-		if(n < 0 || (p != WHITE && p != BLACK))
+		if(n < 1 || n > Board.MAX_DIM || (p != WHITE && p != BLACK))
+			return INVALID;
+		stopPonder();  // Stop searching for the last game.
+		if(!makeEngine())  // Read the opening book and the weights, unless shared.
 			return INVALID;
 		dim = n;  // Initialize dimension of the board.
 		board = new Board(dim);  // Initialize the board.
 		player = p;  // Initialize the player
 		numPieces = 0;  // Initialize the number of pieces on the board.
+		search = newSearch(board);  // Initialize the search.
         /* Initialize the last move made by opponent. */
         lastOpponentMove.P = EMPTY;
         lastOpponentMove.Row = -5;  // Set a arbitrary invalid move.
@@ -80,14 +211,15 @@ public class SharWang implements Player, Piece {
 	 * @return   a smart move generated by alpha-beta pruning algorithm
 	 */
 	public Move makeMove() {
-        double[] ws;
+        /* Count the work of the move, and time it for the Flight Recorder. */
+        long start = System.nanoTime();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        stats = new SearchStats();
+        lastDepth = 0;
+
         /* Set weights for the corresponding round. */
-        if(numPieces < 16)
-            ws = weights[0];
-        else if(numPieces > 30)
-            ws = weights[14];
-        else
-            ws = weights[numPieces-16];
+        ws = weightsFor(numPieces);
 
         /* Strategy:
          *   Place first move on the center of the board, an make sure the opponent's
@@ -95,25 +227,170 @@ public class SharWang implements Player, Piece {
          *   For the rest stages, use the weights of round 16 if number of pieces is
          *     less than 16. Use the weights of round 30 if the number of pieces is
          *     greater than 30. Otherwise, use the weights of corresponding stages.
+         *   Search deeper and deeper until the time for the move runs out.
          *
          */
-        Move m;
-        if(numPieces <= 1)
+        Move m = bookMove();
+        if(m != null)
+            stopPonder();  // Book move, no search needed.
+        else if(numPieces <= 1)
             m = firstMove(); // First Move
-        else {
-            w1 = ws[0];
-            w2 = ws[1];
-            w3 = ws[2];
-            if((numPieces <= 10 && dim == 6) || (numPieces <= dim*dim/2 && dim == 7))
-                m = smartMove(3);
-            else
-                m = smartMove(4);
+        else if(board.getNumEmpty() <= endgameEmpty) {
+            stopPonder();
+            m = solveEndgame();
+        } else {
+            search.setWeights(ws);
+            /* Use the search made on the opponent's time if it predicted the opponent's move. */
+            m = ponderResult();
+            if(m == null)
+                m = iterativeDeepening(System.nanoTime() + moveTime * 1000000L);
         }
+        stats.finish(lastDepth, System.nanoTime() - start);
+        if(event.shouldCommit())
+            commit(event, m);
 		board.makeMove(m);  // Update the board.
         numPieces++;
+        if(ponder)
+            startPonder();
 		return m;
 	}
 
+	/**
+	 * Get the statistics of the search of the last move.
+	 *
+	 * @return the statistics of the last move
+	 */
+	public SearchStats getLastStats() {
+		return stats;
+	}
+
+	/**
+	 * Set the time for a move.
+	 *
+	 * @param millis  the time in milliseconds
+	 */
+	public void setMoveTime(long millis) {
+		moveTime = millis;
+	}
+
+	/**
+	 * Get the time for a move.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public long getMoveTime() {
+		return moveTime;
+	}
+
+	/**
+	 * Set the maximum search depth.
+	 *
+	 * @param depth  the maximum depth, at least 1
+	 */
+	public void setMaxDepth(int depth) {
+		maxDepth = Math.max(1, depth);
+	}
+
+	/**
+	 * Set the number of threads searching the root children.
+	 * A parallel search returns the same move as a serial search of the same depth.
+	 *
+	 * @param threads  the number of threads, 1 for a serial search
+	 */
+	public void setParallelism(int threads) {
+		parallelism = Math.max(1, threads);
+	}
+
+	/**
+	 * Set the number of threads of a Lazy SMP search.
+	 *
+	 * @param threads  the number of threads, 1 for a single-threaded search
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Set whether to search as a principal variation search.
+	 *
+	 * @param pvs  true for a principal variation search, false for plain alpha-beta
+	 */
+	public void setPvs(boolean pvs) {
+		this.pvs = pvs;
+		if(search != null)
+			search.setPvs(pvs);
+	}
+
+	/**
+	 * Set whether the leaves below the nodes at depth 1 are scored together as
+	 * a batch, see LeafBatch.
+	 *
+	 * @param batch  true to score the leaves as a batch, false to evaluate them one by one
+	 */
+	public void setBatchEval(boolean batch) {
+		batchEval = batch;
+		if(search != null)
+			search.setLeafScorer(batch ? LeafBatch.bestScorer() : null);
+	}
+
+	/**
+	 * Set the half width of the aspiration windows of a principal variation search.
+	 *
+	 * @param halfWidth  the half width in units of the evaluation function, 0 for none
+	 */
+	public void setAspiration(double halfWidth) {
+		aspiration = Math.max(0, halfWidth);
+	}
+
+	/**
+	 * Set the largest number of empty cells for which the rest of the game is
+	 * solved exactly.
+	 *
+	 * @param empty  the number of empty cells, 0 to never solve
+	 */
+	public void setEndgameEmpty(int empty) {
+		endgameEmpty = Math.max(0, empty);
+	}
+
+	/**
+	 * Set the opening book file, mapped at the next init(). Positions in the
+	 * book are played without searching. If the file can not be read, init()
+	 * reports it on stderr and fails.
+	 *
+	 * @param path  the book file, or null for no book
+	 */
+	public void setBook(String path) {
+		bookPath = path;
+	}
+
+	/**
+	 * Set the weights file, read at the next init(). A file written by
+	 * WeightTrainer replaces the built-in weights of every round. If the file
+	 * can not be read, init() reports it on stderr and fails.
+	 *
+	 * @param path  the weights file, or null for the built-in weights
+	 */
+	public void setWeightsFile(String path) {
+		weightsPath = path;
+	}
+
+	/**
+	 * Set whether to search on the opponent's time. After a move, the position
+	 * after the predicted reply of the opponent is searched in the background
+	 * until the opponent's move arrives. If the prediction was right, the next
+	 * move continues that search, otherwise the search is stopped and only its
+	 * transposition table entries are kept. The background search stops by
+	 * itself after ten move times, and is skipped if the engine has no free
+	 * helper thread.
+	 *
+	 * @param ponder  true to search on the opponent's time
+	 */
+	public void setPonder(boolean ponder) {
+		this.ponder = ponder;
+		if(!ponder)
+			stopPonder();
+	}
+
 	/**
 	 * Update the move of opponent.
 	 *
@@ -130,6 +407,13 @@ public class SharWang implements Player, Piece {
 		/* Otherwise. */
         lastOpponentMove = m;
         numPieces++;
+        /* Keep the background search if it is searching this position. */
+        if(pondering != null) {
+            if(m.Row == pondering.predicted.Row && m.Col == pondering.predicted.Col)
+                pondering.hit = true;
+            else
+                stopPonder();
+        }
 		return 0;
 	}
 
@@ -154,120 +438,572 @@ public class SharWang implements Player, Piece {
 		output.format(board.toString());
 	}
 
+	/**
+	 * Stop the background search, and the threads of the engine unless it is
+	 * shared. The player can not be used afterwards.
+	 */
+	public void close() {
+		stopPonder();
+		if(!sharedEngine && engine != null)
+			engine.close();
+	}
+
+	/*
+	 * Search with depth 1, 2, 3, ... until the deadline in System.nanoTime().
+	 * The move of the last completed search is returned, so a search which
+	 * is aborted by the deadline is only used if no search completed.
+	 */
+	private Move iterativeDeepening(long deadline) {
+		Move best = null, m;
+		this.deadline = deadline;
+		aborted = false;
+		search.start(deadline);
+		age = table.newSearch();
+		search.setAge(age);
+		lastDepth = 0;
+		List<Search> helperSearches = new ArrayList<>();
+		List<Future<?>> helperResults = startHelpers(helperSearches);
+		workers = new ThreadLocal<>();
+		for(int depth = 1; depth <= maxDepth; depth++) {
+			if(parallelism > 1 && threads == 1)
+				m = parallelSmartMove(depth, best);
+			else if(pvs && aspiration > 0 && best != null) {
+				/* Search a window around the last score, and the full window if the score is outside. */
+				double low = search.getRootScore() - aspiration, high = search.getRootScore() + aspiration;
+				m = smartMove(search, depth, best, low, high);
+				if(!search.isAborted() && (search.getRootScore() <= low || search.getRootScore() >= high))
+					m = smartMove(search, depth, best);
+			} else
+				m = smartMove(search, depth, best);
+			if(aborted || search.isAborted()) {
+				if(best == null)
+					best = m;
+				break;
+			}
+			best = m;
+			lastDepth = depth;
+			/* Stop if the search has reached the end of the game, or time is up. */
+			if(depth >= board.getNumEmpty() || System.nanoTime() >= deadline)
+				break;
+		}
+		stats.add(search);
+		stopHelpers(helperSearches, helperResults);
+		for(Search s : workerSearches)
+			stats.add(s);
+		workerSearches.clear();
+		workers = null;
+		return best;
+	}
+
+	/* Start the helper threads of a Lazy SMP search. Each helper searches its own copy
+	   of the board, odd helpers one ply deeper, and starts at a different root child. */
+	private List<Future<?>> startHelpers(List<Search> helperSearches) {
+		List<Future<?>> results = new ArrayList<>();
+		if(threads <= 1)
+			return results;
+		final int[] moves = rootMoves(board, null, false);
+		if(moves.length == 0)
+			return results;
+		for(int i = 1; i < threads; i++) {
+			final Search s = newSearch(new Board(board));
+			final int id = i;
+			s.setWeights(ws);
+			s.start(deadline);
+			try {
+				results.add(engine.helpers().submit(new Runnable() {
+					public void run() {
+						for(int depth = 1 + (id & 1); depth <= maxDepth && depth <= s.getBoard().getNumEmpty() + 1
+								&& !s.isAborted(); depth++)
+							s.searchRoot(depth, moves, id * moves.length / threads);
+					}
+				}));
+			} catch(RejectedExecutionException e) {
+				break;  // No free helper thread, search with the helpers started.
+			}
+			helperSearches.add(s);
+		}
+		return results;
+	}
+
+	/* Stop the helper threads and wait for them, and add their work to the statistics. */
+	private void stopHelpers(List<Search> helperSearches, List<Future<?>> results) {
+		for(Search s : helperSearches)
+			s.stop();
+		for(int i = 0; i < results.size(); i++) {
+			waitFor(results.get(i));
+			stats.add(helperSearches.get(i));
+		}
+	}
+
+	/*
+	 * A search on the opponent's time, of the position after the predicted
+	 * reply of the opponent. It deepens until stopped or until its deadline,
+	 * which is set once the opponent's move has arrived.
+	 */
+	private static class Ponder {
+		/* The predicted move of the opponent, and whether the opponent played it. */
+		Move predicted;
+		volatile boolean hit;
+
+		/* The search, on a board with the predicted move made. */
+		Search search;
+		Future<?> future;
+
+		/* The best move of the last completed iteration, and its depth. */
+		volatile Move best;
+		volatile int depth;
+	}
+
+	/* Start searching the position after the opponent's predicted reply, the
+	   best reply found by the last search. */
+	private void startPonder() {
+		if(board.isComplete())
+			return;
+		int reply = search.getBestMove(Search.changePlayer(player));
+		if(reply == TranspositionTable.NO_MOVE)
+			return;
+		final Ponder p = new Ponder();
+		p.predicted = new Move();
+		p.predicted.P = Search.changePlayer(player);
+		p.predicted.Row = reply / dim;
+		p.predicted.Col = reply % dim;
+		Board copy = new Board(board);
+		if(!copy.makeMove(p.predicted) || copy.isComplete())
+			return;
+		p.search = newSearch(copy);
+		p.search.setAge(table.newSearch());
+		p.search.setWeights(weightsFor(numPieces + 1));
+		long limit = PONDER_MOVES * 1000000L;
+		p.search.start(moveTime < Long.MAX_VALUE / 2 / limit ? System.nanoTime() + moveTime * limit : Long.MAX_VALUE);
+		try {
+			p.future = engine.helpers().submit(new Runnable() {
+				public void run() {
+					Move best = null, m;
+					for(int depth = 1; depth <= maxDepth; depth++) {
+						m = smartMove(p.search, depth, best);
+						if(p.search.isAborted()) {
+							/* Like iterativeDeepening(), use an aborted search only if none completed. */
+							if(best == null)
+								p.best = m;
+							break;
+						}
+						best = m;
+						p.best = m;
+						p.depth = depth;
+						if(depth >= p.search.getBoard().getNumEmpty())
+							break;
+					}
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			return;  // No free helper thread, do not ponder.
+		}
+		pondering = p;
+	}
+
+	/* The move found by the background search if it predicted the opponent's move,
+	   after letting it search for the time of a move. Otherwise null. */
+	private Move ponderResult() {
+		Ponder p = pondering;
+		if(p == null)
+			return null;
+		if(!p.hit) {
+			stopPonder();
+			return null;
+		}
+		pondering = null;
+		p.search.setDeadline(System.nanoTime() + moveTime * 1000000L);
+		waitFor(p.future);
+		lastDepth = p.depth;
+		stats.add(p.search);
+		Move m = p.best;
+		if(m == null || !board.isEmpty(m.Row, m.Col))
+			return null;
+		return m;
+	}
+
+	/* Stop the background search and wait for it. Its table entries are kept. */
+	private void stopPonder() {
+		Ponder p = pondering;
+		if(p == null)
+			return;
+		pondering = null;
+		p.search.stop();
+		waitFor(p.future);
+	}
+
+	/* Wait for a background task. */
+	private static void waitFor(Future<?> future) {
+		try {
+			future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			throw new IllegalStateException("Background search failed", e.getCause());
+		}
+	}
+
+	/*
+	 * Make the engine of this player from its settings, unless it is shared or
+	 * made from the same files already. The transposition table of the last
+	 * game is then kept: its entries are keyed by the position, the weights
+	 * and the maximizing player, so they stay valid in a new game. A book or
+	 * a weights file which can not be read is reported on stderr, and the
+	 * engine is kept as it was.
+	 *
+	 * Returns true if the engine is ready, false if a file can not be read.
+	 */
+	private boolean makeEngine() {
+		if(sharedEngine || (engine != null && Objects.equals(bookPath, engineBookPath)
+				&& Objects.equals(weightsPath, engineWeightsPath)))
+			return true;
+		OpeningBook book = null;
+		double[][] weights = DEFAULT_WEIGHTS;
+		try {
+			if(bookPath != null)
+				book = new OpeningBook(Paths.get(bookPath));
+		} catch(IOException e) {
+			System.err.println("SharWang: can not read the opening book " + bookPath + ": " + e);
+			return false;
+		}
+		try {
+			if(weightsPath != null)
+				weights = WeightsFile.read(Paths.get(weightsPath));
+		} catch(IOException e) {
+			System.err.println("SharWang: can not read the weights file " + weightsPath + ": " + e);
+			return false;
+		}
+		if(engine != null)
+			engine.close();
+		engine = new Engine(weights, book, tableEntries, 1, tablePolicy, Engine.defaultHelpers());
+		table = engine.takeTable();
+		engineBookPath = bookPath;
+		engineWeightsPath = weightsPath;
+		return true;
+	}
+
+	/* The book move of the current position, or null if it is not in the book. */
+	private Move bookMove() {
+		OpeningBook book = engine.getBook();
+		if(book == null)
+			return null;
+		int cell = book.lookup(board, player);
+		if(cell == TranspositionTable.NO_MOVE)
+			return null;
+		Move m = new Move();
+		m.P = player;
+		m.Row = cell / dim;
+		m.Col = cell % dim;
+		return m;
+	}
+
+	/* A search of a board with the settings of the player. */
+	private Search newSearch(Board b) {
+		Search s = new Search(b, player, table);
+		s.setAge(age);
+		s.setPvs(pvs);
+		s.setLeafScorer(batchEval ? LeafBatch.bestScorer() : null);
+		return s;
+	}
+
+	/* Fill in and commit the Flight Recorder event of a move. */
+	private void commit(SearchEvent event, Move m) {
+		event.end();
+		event.dim = dim;
+		event.player = player;
+		event.pieces = numPieces;
+		event.row = m.Row;
+		event.col = m.Col;
+		event.depth = stats.getDepth();
+		event.nodes = stats.getNodes();
+		event.leafEvals = stats.getLeafEvals();
+		event.cutoffs = stats.getCutoffs();
+		event.firstMoveCutoffs = stats.getFirstMoveCutoffs();
+		event.ttProbes = stats.getTableProbes();
+		event.ttHits = stats.getTableHits();
+		event.nodesPerSecond = stats.getNodesPerSecond();
+		event.commit();
+	}
+
+	/* The weights of the round with a number of pieces on the board. */
+	private double[] weightsFor(int pieces) {
+		return engine.weightsFor(pieces);
+	}
+
+	/* The number of nodes searched by the last move, for reporting. */
+	long getLastNodes() {
+		return stats.getNodes();
+	}
+
+	/* The depth completed by the last move, for reporting. */
+	int getLastDepth() {
+		return lastDepth;
+	}
+
+	/* Empty the transposition table and forget the killer moves and the history,
+	   so searches in benchmarks repeat the same work. */
+	void clearSearch() {
+		table.clear();
+		search.clearHeuristics();
+	}
+
+	/* Search the current position without using the book or applying the move, for tools. */
+	Move searchMove() {
+		long start = System.nanoTime();
+		stats = new SearchStats();
+		search.setWeights(weightsFor(numPieces));
+		Move m = iterativeDeepening(start + moveTime * 1000000L);
+		stats.finish(lastDepth, System.nanoTime() - start);
+		return m;
+	}
+
+	/* Solve the rest of the game exactly, searching every cell including the corners.
+	   If the solver runs out of half the time of the move, the move is searched
+	   with the evaluation function in the other half. */
+	private Move solveEndgame() {
+		long start = System.nanoTime(), half = moveTime * 500000L;
+		search.setExact();
+		search.start(start + half);
+		age = table.newSearch();
+		search.setAge(age);
+		int depth = board.getNumEmpty();
+		Move m = smartMove(search, depth, null);
+		stats.add(search);
+		if(!search.isAborted()) {
+			lastDepth = depth;
+			return m;
+		}
+		search.setWeights(ws);
+		return iterativeDeepening(System.nanoTime() + half);
+	}
+
+	/* Play a move of either player without searching, for setting up positions in tools.
+	   Returns false if the move is invalid. */
+	boolean play(Move m) {
+		if(!board.makeMove(m))
+			return false;
+		numPieces++;
+		return true;
+	}
+
 	/* The first layer of alpha-beta pruning algorithm. 
-	   We define this function for getting the best move. */
-	private Move smartMove(int limit) {
+	   We define this function for getting the best move.
+	   The move of the previous iteration is searched first. The search is on the board of s. */
+	private Move smartMove(Search s, int limit, Move previous) {
 		/* Define alpha as -Infinity, beta as Infinity. */
-		double alpha = -Double.MAX_VALUE, beta = Double.MAX_VALUE;
+		return smartMove(s, limit, previous, -Double.MAX_VALUE, Double.MAX_VALUE);
+	}
+
+	/* The first layer of alpha-beta pruning with a window. The best score is recorded
+	   in s, if it is at most alpha or at least beta the move is not reliable. */
+	private Move smartMove(Search s, int limit, Move previous, double alpha, double beta) {
+		Board board = s.getBoard();
 		/* Define a variable to save the scores of child boards. */
 		double childScore;
         /* Define a variable to check whether we found a move not on the corner. */
         boolean found = false;
 		/* Define the best move and temp move variables. */
-		Move best_move = new Move(), m;
-		/* Define the child board variable. */
-		Board boardChild;
+		Move best_move = new Move(), m = new Move();
+		m.P = player;
 		/* For each child board. */
-		for(int row = 0; row < dim; row++) {
-			for(int col = 0; col < dim; col++) {
-                if((row==0 && col==0) || (row==0 && col==dim-1) || (row==dim-1 && col==0) || (row==dim-1 && col==dim-1))
-                    continue;
-				if(board.getCell(row, col).getToken().equals(Board.TOKEN_EMPTY)) {
-					/* Let boardChile be the child board. */
-					boardChild = new Board(board);
-					m = new Move();
-					m.P = player;
-					m.Row = row;
-					m.Col = col;
-					boardChild.makeMove(m);
-					childScore = alphabeta(boardChild, limit-1, alpha, beta, changePlayer(player));
-					/* Choose the maximum of alpha. */
-					if(alpha < childScore) {
-						alpha = childScore;
-						/* Update the best move. */
-						best_move.P = player;
-						best_move.Row = row;
-						best_move.Col = col;
-                        found = true;
-					}
-				}
+		int[] moves = rootMoves(board, previous, s.isExact());
+		for(int i = 0; i < moves.length && alpha < beta; i++) {
+			/* Make the move on the board, search the child and take it back. */
+			m.Row = moves[i] / dim;
+			m.Col = moves[i] % dim;
+			board.makeMove(m);
+			childScore = s.searchChild(i, limit-1, alpha, beta, true, Search.changePlayer(player));
+			board.unmakeMove();
+			/* The score of an aborted search is meaningless. */
+			if(s.isAborted())
+				break;
+			/* Choose the maximum of alpha. */
+			if(alpha < childScore) {
+				alpha = childScore;
+				/* Update the best move. */
+				best_move.P = player;
+				best_move.Row = m.Row;
+				best_move.Col = m.Col;
+                found = true;
 			}
 		}
+        s.setRootScore(alpha);
         if(!found)
-            best_move = placeOnCorner();
+            best_move = placeOnCorner(board);
 		return best_move;
 	}
 
-	/* Impletation of alpha-beta pruning algorithm. */
-	private double alphabeta(Board b, int depth, double alpha, double beta, int player) {
-		/* Return the value of evaluation function if reach the terminal node. */
-		if(depth == 0 || b.isComplete())
-            return getEval(b, w1, w2, w3);
-        /* Otherwise, continue search. */
-		Move m;
-		Board boardChild;
-		boolean break2 = false;  // A variable for breaking from the nested for loop.
-		/* For each child board. */
-		if(player == this.player) {
-			/* If the player is the maximizing player. */
-			for(int row = 0; row < dim; row++) {
-				for(int col = 0; col < dim; col++) {
-						/* Let boardChile be the child board. */
-						boardChild = new Board(b);
-						m = new Move();
-						m.P = player;
-						m.Row = row;
-						m.Col = col;
-						boardChild.makeMove(m);
-						/* Select maximum alpha. */
-						alpha = Math.max(alpha, alphabeta(boardChild, depth-1, alpha, beta, changePlayer(player)));
-						if(beta <= alpha) {
-							/* beta cut-off. */
-							break2 = true;
-							break;
-						}
-				}
-				if(break2)
-					break;
+	/*
+	 * The root layer searched by parallel threads. The first child is searched
+	 * alone to get a good alpha, then the other children are split among the
+	 * threads of the pool. Each thread searches its own copy of the board, see
+	 * worker(), and shares the best alpha found so far, and the transposition table.
+	 * Children are ranked like in smartMove(), the first child with the
+	 * highest score wins. A child searched after the alpha reached its score
+	 * fails low with that score, so such children are searched again just
+	 * below the highest score to tell whether they really reach it.
+	 */
+	private Move parallelSmartMove(final int limit, Move previous) {
+		final int[] moves = rootMoves(board, previous, false);
+		if(moves.length == 0)
+			return placeOnCorner(board);
+		ForkJoinPool pool = engine.pool(parallelism);
+		final double[] scores = new double[moves.length];
+		final double[] alphas = new double[moves.length];  // The alpha each child was searched with.
+		final boolean[] done = new boolean[moves.length];
+		final AtomicLong sharedAlpha = new AtomicLong(Double.doubleToLongBits(-Double.MAX_VALUE));
+		searchRootChild(moves[0], limit, sharedAlpha, scores, alphas, done, 0);
+		if(moves.length > 1 && done[0]) {
+			List<RecursiveAction> tasks = new ArrayList<>();
+			for(int i = 1; i < moves.length; i++) {
+				final int child = i;
+				tasks.add(new RecursiveAction() {
+					protected void compute() {
+						searchRootChild(moves[child], limit, sharedAlpha, scores, alphas, done, child);
+					}
+				});
 			}
-			return alpha;
-		} else {
-			/* Otherwise. */
-			for(int row = 0; row < dim; row++) {
-				for(int col = 0; col < dim; col++) {
-						/* Let boardChile be the child board. */
-						boardChild = new Board(b);
-						m = new Move();
-						m.P = player;
-						m.Row = row;
-						m.Col = col;
-						boardChild.makeMove(m);
-						/* Select minimum beta. */
-						beta = Math.min(beta, alphabeta(boardChild, depth-1, alpha, beta, changePlayer(player)));
-						if(beta <= alpha) {
-							/* alpha cut-off. */
-							break2 = true;
-							break;
-						}
+			pool.invoke(new RecursiveAction() {
+				protected void compute() {
+					invokeAll(tasks);
 				}
-				if(break2)
-					break;
+			});
+		}
+		/* The highest score. */
+		int best = -1;
+		for(int i = 0; i < moves.length; i++) {
+			if(done[i] && (best < 0 || scores[i] > scores[best]))
+				best = i;
+		}
+		if(best < 0)
+			return placeOnCorner(board);
+		/* The first child with the highest score. A score is exact if it is above
+		   the alpha it was searched with, otherwise the child is searched again. */
+		double highest = scores[best];
+		for(int i = 0; i < moves.length && !aborted; i++) {
+			if(!done[i] || scores[i] < highest)
+				continue;
+			if(scores[i] > alphas[i] || searchRootChild(moves[i], limit, Math.nextDown(highest)) > Math.nextDown(highest)) {
+				best = i;
+				break;
+			}
+		}
+		Move m = new Move();
+		m.P = player;
+		m.Row = moves[best] / dim;
+		m.Col = moves[best] % dim;
+		return m;
+	}
+
+	/* Search a root child on a copy of the board with the shared alpha, and raise the shared alpha. */
+	private void searchRootChild(int move, int limit, AtomicLong sharedAlpha, double[] scores, double[] alphas,
+			boolean[] done, int i) {
+		double alpha = Double.longBitsToDouble(sharedAlpha.get());
+		double score = searchRootChild(move, limit, alpha);
+		if(Double.isNaN(score))
+			return;
+		scores[i] = score;
+		alphas[i] = alpha;
+		done[i] = true;
+		long current;
+		while(score > Double.longBitsToDouble(current = sharedAlpha.get())) {
+			if(sharedAlpha.compareAndSet(current, Double.doubleToLongBits(score)))
+				break;
+		}
+	}
+
+	/* Search a root child on the board of the thread, returns ABORTED (NaN) if time is up. */
+	private double searchRootChild(int move, int limit, double alpha) {
+		Search s = worker();
+		Board copy = s.getBoard();
+		Move m = new Move();
+		m.P = player;
+		m.Row = move / dim;
+		m.Col = move % dim;
+		copy.makeMove(m);
+		double score = s.alphabeta(limit-1, alpha, Double.MAX_VALUE, Search.changePlayer(player));
+		copy.unmakeMove();
+		if(s.isAborted()) {
+			aborted = true;
+			return ABORTED;
+		}
+		return score;
+	}
+
+	/* The search of the current thread in the parallel root search of the move. Its
+	   work is added to the statistics when the move is made. */
+	private Search worker() {
+		Search s = workers.get();
+		if(s == null) {
+			s = newSearch(new Board(board));
+			s.setWeights(ws);
+			s.start(deadline);
+			workers.set(s);
+			workerSearches.add(s);
+		}
+		return s;
+	}
+
+	/* A score returned by an aborted search. */
+	private static final double ABORTED = Double.NaN;
+
+	/* The root moves as cell indexes in search order: the previous best move, then
+	   the empty cells in row-major order. Unless corners are searched, they are
+	   only played if no other cell is empty. */
+	private int[] rootMoves(Board board, Move previous, boolean corners) {
+		int[] moves = new int[dim * dim];
+		int n = 0, first = -1;
+		if(previous != null && (corners || !isCorner(previous.Row, previous.Col))
+				&& board.isEmpty(previous.Row, previous.Col)) {
+			first = previous.Row * dim + previous.Col;
+			moves[n++] = first;
+		}
+		for(int row = 0; row < dim; row++) {
+			for(int col = 0; col < dim; col++) {
+				if(row * dim + col != first && (corners || !isCorner(row, col)) && board.isEmpty(row, col))
+					moves[n++] = row * dim + col;
+			}
+		}
+		/* Drop the moves leading to the transpose of an earlier child. */
+		long[] children = new long[n];
+		Move m = new Move();
+		m.P = player;
+		int kept = 0;
+		for(int i = 0; i < n; i++) {
+			m.Row = moves[i] / dim;
+			m.Col = moves[i] % dim;
+			board.makeMove(m);
+			long child = board.getCanonicalHash();
+			board.unmakeMove();
+			boolean twin = false;
+			for(int j = 0; j < kept && !twin; j++)
+				twin = children[j] == child;
+			if(!twin) {
+				children[kept] = child;
+				moves[kept++] = moves[i];
 			}
-			return beta;
 		}
+		int[] result = new int[kept];
+		System.arraycopy(moves, 0, result, 0, kept);
+		return result;
 	}
 
-    /* Return a valid move on the corner of the board. */
-    private Move placeOnCorner() {
+	/* Check whether a cell is a corner of the board. */
+	private boolean isCorner(int row, int col) {
+		return (row==0 || row==dim-1) && (col==0 || col==dim-1);
+	}
+
+    /* Return a valid move on the corner of a board. */
+    private Move placeOnCorner(Board board) {
         Move m = new Move();
         m.P = player;
-        if (board.getCell(0, 0).getToken().equals(Board.TOKEN_EMPTY)) {
+        if (board.isEmpty(0, 0)) {
             m.Row = 0; // Left-Up
             m.Col = 0;
-        } else if (board.getCell(0, dim - 1).getToken().equals(Board.TOKEN_EMPTY)) {
+        } else if (board.isEmpty(0, dim - 1)) {
             m.Row = 0; // Right-Up
             m.Col = dim - 1;
-        } else if (board.getCell(dim - 1, 0).getToken().equals(Board.TOKEN_EMPTY)) {
+        } else if (board.isEmpty(dim - 1, 0)) {
             m.Row = dim - 1;
             m.Col = 0; // Left-Down
         } else {
@@ -289,30 +1025,4 @@ public class SharWang implements Player, Piece {
         return m;
     }
 
-	/* Return the player ID of opponent. */
-	private int changePlayer(int player) {
-		if(player == WHITE)
-			return BLACK;
-		else
-			return WHITE;
-	}
-
-	/*
-	 * Get the score of our defined evaluation function.
-	 * Then our evaluation function is:
-	 *   Eval = w1 * capturedScore + w2 * sideScore + w3 * potentialScore
-	 */
-	private double getEval(Board b, double w1, double w2, double w3) {
-        int sign;
-        if (player == WHITE)
-            sign = 1;
-        else
-            sign = -1;
-        double eval = 0;
-        eval += w1 * (b.getWhiteScore() - b.getBlackScore());
-        eval += w2 * (b.getWhiteSideScore() - b.getBlackSideScore());
-        eval += w3 * (b.getWhitePScore() - b.getBlackPScore());
-        return sign * eval;
-    }
-
 }
\ No newline at end of file
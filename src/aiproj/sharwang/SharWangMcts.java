@@ -0,0 +1,388 @@
+package aiproj.sharwang;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import aiproj.squatter.*;
+
+/**
+ *  SharWangMcts:
+ *    An AI agent for Squatter using Monte Carlo tree search (UCT) instead of
+ *    alpha-beta pruning. It is an implementation of class Player.
+ *
+ *    Each iteration walks down the tree choosing children by the UCT score,
+ *    expands a node once it has been visited often enough, plays random
+ *    moves to the end of the game, and counts the result in the nodes of
+ *    the walk. Several threads share one tree (tree parallelism): a node
+ *    being walked through counts as lost until its result arrives (virtual
+ *    loss), so the threads spread over different parts of the tree.
+ *    Playouts make and unmake moves on a board of each thread and allocate
+ *    nothing.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class SharWangMcts implements Player, Piece {
+	/* The dimension of the board. */
+	private int dim;
+
+	/* The player ID. */
+	private int player;
+
+	/* The game board. */
+	private Board board;
+
+	/* The time for a move in milliseconds, and the maximum number of iterations of a move, 0 for no limit. */
+	private long moveTime = Long.getLong("sharwang.movetime", 1000);
+	private long iterations = Long.getLong("sharwang.mcts.iterations", 0);
+
+	/* The number of threads searching the tree, and the pool of the threads. */
+	private int threads = Integer.getInteger("sharwang.mcts.threads", Runtime.getRuntime().availableProcessors());
+	private ExecutorService workers;
+
+	/* The exploration constant of the UCT score. */
+	private double exploration = Double.parseDouble(System.getProperty("sharwang.mcts.c", "0.7"));
+
+	/*
+	 * Whether the playouts prefer moves adding to the potential score: of two
+	 * random empty cells, the one with more diagonal tokens of the player is
+	 * played. Otherwise the playouts play uniformly random moves.
+	 */
+	private boolean potentialPlayouts = Boolean.getBoolean("sharwang.mcts.potential");
+
+	/* A node has children once it has been visited this many times. */
+	private static final int EXPAND_VISITS = 8;
+
+	/* The visits a node counts as lost while an iteration walks through it. */
+	private static final int VIRTUAL_LOSS = 1;
+
+	/* The number of iterations of the last move, for reporting. */
+	private long lastIterations;
+
+	/*
+	 * A node of the search tree, the position after a move. The statistics
+	 * are of the player who made the move, and are guarded by the node.
+	 */
+	private static class Node {
+		/* The cell index of the move, and the player who made it. */
+		final int move;
+		final int player;
+
+		/* The children, null until the node is expanded. */
+		Node[] children;
+
+		/* The number of visits, including virtual losses, and the results of the player. */
+		int visits;
+		double wins;
+
+		Node(int move, int player) {
+			this.move = move;
+			this.player = player;
+		}
+	}
+
+	/**
+	 * Initialize a Player.
+	 *
+	 * @param n  the dimension of the board.
+	 * @param p  the ID of the player
+	 * @return   1 if valid, otherwise -1
+	 */
+	public int init(int n, int p) {
+		if(n < 1 || n > Board.MAX_DIM || (p != WHITE && p != BLACK))
+			return INVALID;
+		dim = n;
+		board = new Board(dim);
+		player = p;
+		return 1;
+	}
+
+	/**
+	 * Make a move found by Monte Carlo tree search.
+	 *
+	 * @return   the most visited move of the root
+	 */
+	public Move makeMove() {
+		Node root = new Node(TranspositionTable.NO_MOVE, Search.changePlayer(player));
+		expand(root, board);
+		long deadline = System.nanoTime() + moveTime * 1000000L;
+		lastIterations = search(root, deadline);
+		/* Play the most visited child. */
+		Node best = root.children[0];
+		for(Node child : root.children) {
+			if(child.visits > best.visits)
+				best = child;
+		}
+		Move m = new Move();
+		m.P = player;
+		m.Row = best.move / dim;
+		m.Col = best.move % dim;
+		board.makeMove(m);
+		return m;
+	}
+
+	/**
+	 * Update the board with the opponent's move.
+	 *
+	 * @param m  the move made by opponent
+	 * @return   0 if the move is valid, otherwise -1
+	 */
+	public int opponentMove(Move m) {
+		/* Return 0 if the move is not made by opponent. */
+		if(m.P == this.player)
+			return 0;
+		/* Return -1 if the move is invalid. */
+		if(!board.makeMove(m))
+			return -1;
+		return 0;
+	}
+
+	/**
+	 * Get the winner of the game.
+	 *
+	 * @return   0 if the game is uncomplated
+	 *           1 if the winner is white
+	 *           2 if the winner is black
+	 *           3 if draw
+	 */
+	public int getWinner() {
+		return board.getWinner();
+	}
+
+	/**
+	 * Print the board to a PrintStream.
+	 *
+	 * @param output  PrintStream
+	 */
+	public void printBoard(PrintStream output) {
+		output.format(board.toString());
+	}
+
+	/**
+	 * Set the time for a move.
+	 *
+	 * @param millis  the time in milliseconds
+	 */
+	public void setMoveTime(long millis) {
+		moveTime = millis;
+	}
+
+	/**
+	 * Set the maximum number of iterations of a move. A move stops at
+	 * whichever comes first, the time or the iterations.
+	 *
+	 * @param iterations  the number of iterations, 0 for no limit
+	 */
+	public void setIterations(long iterations) {
+		this.iterations = Math.max(0, iterations);
+	}
+
+	/**
+	 * Set the number of threads searching the tree.
+	 *
+	 * @param threads  the number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Set the exploration constant of the UCT score.
+	 *
+	 * @param c  the weight of the exploration term
+	 */
+	public void setExploration(double c) {
+		exploration = c;
+	}
+
+	/**
+	 * Set whether the playouts prefer moves adding to the potential score.
+	 *
+	 * @param potential  true for the potential playouts, false for uniformly random ones
+	 */
+	public void setPotentialPlayouts(boolean potential) {
+		potentialPlayouts = potential;
+	}
+
+	/* The number of iterations of the last move, for reporting. */
+	long getLastIterations() {
+		return lastIterations;
+	}
+
+	/* --------------------- Methods below are private ------------------- */
+
+	/* Run the iterations of a move on the threads until the deadline or the
+	   iteration limit. Returns the number of iterations run. */
+	private long search(final Node root, final long deadline) {
+		final AtomicLong count = new AtomicLong();
+		if(threads == 1) {
+			iterate(root, new Board(board), deadline, count, new SplittableRandom());
+			return count.get();
+		}
+		if(workers == null) {
+			workers = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "sharwang-mcts");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		List<Future<?>> results = new ArrayList<>();
+		final SplittableRandom seeds = new SplittableRandom();
+		for(int i = 0; i < threads; i++) {
+			final Board copy = new Board(board);
+			final SplittableRandom random = seeds.split();
+			results.add(workers.submit(new Runnable() {
+				public void run() {
+					iterate(root, copy, deadline, count, random);
+				}
+			}));
+		}
+		for(Future<?> result : results) {
+			try {
+				result.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch(ExecutionException e) {
+				throw new IllegalStateException("Search thread failed", e.getCause());
+			}
+		}
+		return count.get();
+	}
+
+	/* The iterations of one thread, on its own copy of the board. */
+	private void iterate(Node root, Board b, long deadline, AtomicLong count, SplittableRandom random) {
+		Node[] path = new Node[dim * dim + 1];
+		Move m = new Move();
+		while(System.nanoTime() < deadline) {
+			if(iterations > 0 && count.getAndIncrement() >= iterations) {
+				count.decrementAndGet();
+				return;
+			}
+			if(iterations == 0)
+				count.incrementAndGet();
+			/* Walk down the tree, making the moves on the board. */
+			int length = 0;
+			Node node = root;
+			addVirtualLoss(node);
+			path[length++] = node;
+			while((node = select(node, b)) != null) {
+				m.P = node.player;
+				m.Row = node.move / dim;
+				m.Col = node.move % dim;
+				b.makeMove(m);
+				path[length++] = node;
+			}
+			/* Play to the end, count the result and take the moves back. */
+			int winner = playout(b, Search.changePlayer(path[length - 1].player), random, m);
+			for(int i = length - 1; i >= 0; i--) {
+				update(path[i], winner);
+				if(i > 0)
+					b.unmakeMove();
+			}
+		}
+	}
+
+	/* Choose the child of a node to walk to by the UCT score, expanding the node
+	   if it has been visited often enough. Returns null if the walk ends at the node. */
+	private Node select(Node node, Board b) {
+		synchronized(node) {
+			if(node.children == null) {
+				if(node.visits < EXPAND_VISITS || b.isComplete())
+					return null;
+				expand(node, b);
+			}
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY, logVisits = Math.log(node.visits);
+			for(Node child : node.children) {
+				double score;
+				synchronized(child) {
+					if(child.visits == 0) {
+						best = child;
+						break;
+					}
+					score = child.wins / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+				}
+				if(score > bestScore) {
+					bestScore = score;
+					best = child;
+				}
+			}
+			addVirtualLoss(best);
+			return best;
+		}
+	}
+
+	/* Give a node a child for every empty cell of its board. */
+	private void expand(Node node, Board b) {
+		int next = Search.changePlayer(node.player);
+		long empty = b.getEmptyCells();
+		Node[] children = new Node[Long.bitCount(empty)];
+		for(int i = 0; empty != 0; i++) {
+			children[i] = new Node(Long.numberOfTrailingZeros(empty), next);
+			empty &= empty - 1;
+		}
+		node.children = children;
+	}
+
+	/* Count a walk through a node as a loss until its result arrives. */
+	private static void addVirtualLoss(Node node) {
+		synchronized(node) {
+			node.visits += VIRTUAL_LOSS;
+		}
+	}
+
+	/* Replace the virtual loss of a node by the result of the game. */
+	private static void update(Node node, int winner) {
+		synchronized(node) {
+			node.visits += 1 - VIRTUAL_LOSS;
+			if(winner == node.player)
+				node.wins += 1;
+			else if(winner == DEAD)
+				node.wins += 0.5;
+		}
+	}
+
+	/* Play moves from a board to the end of the game, and take them back.
+	   Returns the winner. */
+	private int playout(Board b, int toMove, SplittableRandom random, Move m) {
+		int made = 0;
+		while(!b.isComplete()) {
+			long empty = b.getEmptyCells();
+			int cell = randomCell(empty, random);
+			if(potentialPlayouts) {
+				int other = randomCell(empty, random);
+				if(b.countDiagonalTokens(other / dim, other % dim, toMove)
+						> b.countDiagonalTokens(cell / dim, cell % dim, toMove))
+					cell = other;
+			}
+			m.P = toMove;
+			m.Row = cell / dim;
+			m.Col = cell % dim;
+			b.makeMove(m);
+			made++;
+			toMove = Search.changePlayer(toMove);
+		}
+		int winner = b.getWinner();
+		for(int i = 0; i < made; i++)
+			b.unmakeMove();
+		return winner;
+	}
+
+	/* A uniformly random cell of a non-empty mask. */
+	private static int randomCell(long mask, SplittableRandom random) {
+		for(int k = random.nextInt(Long.bitCount(mask)); k > 0; k--)
+			mask &= mask - 1;
+		return Long.numberOfTrailingZeros(mask);
+	}
+}
@@ -0,0 +1,83 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Move;
+import aiproj.squatter.Piece;
+import java.util.Random;
+
+/**
+ *  SmpScaling:
+ *    Reports how the Lazy SMP search scales with the number of threads:
+ *    nodes per second in a fixed time, and the time to complete a fixed depth,
+ *    at 1, 2, 4, 8 and 16 threads on seeded positions of each dimension.
+ *
+ *    Usage: java aiproj.sharwang.SmpScaling [movetime ms] [depth] [positions]
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class SmpScaling implements Piece {
+	/* The thread counts measured. */
+	private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+	/* The dimensions measured. */
+	private static final int[] DIMS = {6, 7, 8};
+
+	public static void main(String[] args) {
+		long moveTime = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int positions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		System.out.println("dim threads    nodes/s  speedup  time-to-depth-" + depth + "(ms)  speedup");
+		for(int dim : DIMS) {
+			double baseNps = 0, baseTime = 0;
+			for(int threads : THREADS) {
+				long nodes = 0, nanos = 0, depthNanos = 0;
+				for(int i = 0; i < positions; i++) {
+					/* Nodes per second in a fixed time. */
+					SharWang p = position(dim, i, threads);
+					p.setMoveTime(moveTime);
+					long start = System.nanoTime();
+					p.makeMove();
+					nanos += System.nanoTime() - start;
+					nodes += p.getLastNodes();
+					p.close();
+					/* Time to complete a fixed depth. */
+					p = position(dim, i, threads);
+					p.setMoveTime(Long.MAX_VALUE / 2000000L);
+					p.setMaxDepth(depth);
+					start = System.nanoTime();
+					p.makeMove();
+					depthNanos += System.nanoTime() - start;
+					p.close();
+				}
+				double nps = nodes / (nanos / 1e9), time = depthNanos / 1e6 / positions;
+				if(threads == 1) {
+					baseNps = nps;
+					baseTime = time;
+				}
+				System.out.printf("%3d %7d %10.0f %8.2f %22.1f %8.2f%n", dim, threads, nps, nps / baseNps,
+						time, baseTime / time);
+			}
+		}
+		System.exit(0);
+	}
+
+	/* A player at a seeded position about a third into the game. */
+	private static SharWang position(int dim, int seed, int threads) {
+		Random random = new Random(dim * 1000 + seed);
+		SharWang p = new SharWang();
+		int pieces = dim * dim / 3 + seed % 2;
+		p.init(dim, pieces % 2 == 0 ? WHITE : BLACK);
+		p.setThreads(threads);
+		Move m = new Move();
+		for(int i = 0; i < pieces; i++) {
+			m.P = i % 2 == 0 ? WHITE : BLACK;
+			do {
+				m.Row = random.nextInt(dim);
+				m.Col = random.nextInt(dim);
+			} while(!p.play(m));
+		}
+		return p;
+	}
+}
@@ -0,0 +1,193 @@
+package aiproj.sharwang;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  TrainingData:
+ *    The binary format of the positions written by SelfPlay. A file is a
+ *    header followed by fixed-width records, one per position, so records
+ *    are read in place by index and the number of records follows from the
+ *    file size.
+ *
+ *    Header (big-endian, HEADER_BYTES):
+ *      int magic "SWSP", int version, int record size, int reserved
+ *    Record (big-endian, RECORD_BYTES):
+ *      int    game    the number of the game in the file
+ *      byte   dim     the dimension of the board
+ *      byte   ply     the number of pieces on the board, i.e. the moves made
+ *      byte   toMove  the player to move next
+ *      byte   result  the winner of the game: WHITE, BLACK or DEAD
+ *      short  white capture, black capture, white side, black side,
+ *             white potential and black potential scores
+ *      short  the number of empty cells
+ *      short  reserved
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public final class TrainingData {
+	/** The first int of a training data file. */
+	public static final int MAGIC = 0x53575350;
+
+	/** The version of the file layout. */
+	public static final int VERSION = 1;
+
+	/** The size of the header and of a record in bytes. */
+	public static final int HEADER_BYTES = 16, RECORD_BYTES = 24;
+
+	/* Offsets of the fields in a record. */
+	private static final int GAME = 0, DIM = 4, PLY = 5, TO_MOVE = 6, RESULT = 7, SCORES = 8, EMPTY = 20;
+
+	/** The number of scores of a record, in the order of the Board getters. */
+	public static final int SCORES_PER_RECORD = 6;
+
+	private TrainingData() {
+	}
+
+	/**
+	 * Write the header of a file.
+	 *
+	 * @param buffer  the buffer to put the header into
+	 */
+	public static void putHeader(ByteBuffer buffer) {
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0);
+	}
+
+	/**
+	 * Check the header of a file.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @throws IllegalArgumentException  if the header is not one of this format
+	 */
+	public static void checkHeader(ByteBuffer buffer) {
+		if(buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("Not a training data file");
+		if(buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_BYTES)
+			throw new IllegalArgumentException("Unsupported training data version " + buffer.getInt(4));
+	}
+
+	/**
+	 * Write the record of a position.
+	 *
+	 * @param buffer  the buffer to put the record into
+	 * @param game    the number of the game
+	 * @param b       the board
+	 * @param ply     the number of pieces on the board
+	 * @param toMove  the player to move next
+	 * @param result  the winner of the game
+	 */
+	public static void putRecord(ByteBuffer buffer, int game, Board b, int ply, int toMove, int result) {
+		buffer.putInt(game).put((byte)b.getDim()).put((byte)ply).put((byte)toMove).put((byte)result)
+				.putShort((short)b.getWhiteScore()).putShort((short)b.getBlackScore())
+				.putShort((short)b.getWhiteSideScore()).putShort((short)b.getBlackSideScore())
+				.putShort((short)b.getWhitePScore()).putShort((short)b.getBlackPScore())
+				.putShort((short)b.getNumEmpty()).putShort((short)0);
+	}
+
+	/**
+	 * Set the result of a record written before the game ended.
+	 *
+	 * @param records  a buffer of records without a header
+	 * @param record   the index of the record in the buffer
+	 * @param result   the winner of the game
+	 */
+	public static void setResult(ByteBuffer records, int record, int result) {
+		records.put(record * RECORD_BYTES + RESULT, (byte)result);
+	}
+
+	/**
+	 * Get the number of records of a file.
+	 *
+	 * @param bytes  the size of the file
+	 * @return       the number of whole records
+	 */
+	public static long records(long bytes) {
+		return Math.max(0, (bytes - HEADER_BYTES) / RECORD_BYTES);
+	}
+
+	/* The offset of a record in a file. */
+	private static int offset(int record) {
+		return HEADER_BYTES + record * RECORD_BYTES;
+	}
+
+	/**
+	 * Get the game of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        the number of the game
+	 */
+	public static int game(ByteBuffer buffer, int record) {
+		return buffer.getInt(offset(record) + GAME);
+	}
+
+	/**
+	 * Get the dimension of the board of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        the dimension
+	 */
+	public static int dim(ByteBuffer buffer, int record) {
+		return buffer.get(offset(record) + DIM);
+	}
+
+	/**
+	 * Get the number of pieces on the board of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        the number of pieces
+	 */
+	public static int ply(ByteBuffer buffer, int record) {
+		return buffer.get(offset(record) + PLY);
+	}
+
+	/**
+	 * Get the player to move of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        WHITE or BLACK
+	 */
+	public static int toMove(ByteBuffer buffer, int record) {
+		return buffer.get(offset(record) + TO_MOVE);
+	}
+
+	/**
+	 * Get the winner of the game of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        WHITE, BLACK or DEAD
+	 */
+	public static int result(ByteBuffer buffer, int record) {
+		return buffer.get(offset(record) + RESULT);
+	}
+
+	/**
+	 * Get a score of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @param i       the score: 0 white capture, 1 black capture, 2 white side,
+	 *                3 black side, 4 white potential, 5 black potential
+	 * @return        the score
+	 */
+	public static int score(ByteBuffer buffer, int record, int i) {
+		return buffer.getShort(offset(record) + SCORES + 2 * i);
+	}
+
+	/**
+	 * Get the number of empty cells of a record.
+	 *
+	 * @param buffer  the buffer holding the file from index 0
+	 * @param record  the index of the record
+	 * @return        the number of empty cells
+	 */
+	public static int empty(ByteBuffer buffer, int record) {
+		return buffer.getShort(offset(record) + EMPTY);
+	}
+}
@@ -0,0 +1,171 @@
+package aiproj.sharwang;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  TranspositionTable:
+ *    A fixed-size hash table of searched positions, so a position reached
+ *    through different move orders is only searched once.
+ *    Each entry stores the depth searched, the bound type, the score and
+ *    the best move (as a cell index row * dim + col) of a position.
+ *
+ *    The table is shared by the threads of a search without locks. An entry
+ *    is three longs in one array: a check word, the score and an info word.
+ *    The check word is the key xor the other two words, so an entry torn by
+ *    two threads storing at once does not verify and is treated as a miss.
+ *    The table may also be shared by several players. Each search takes its
+ *    own age from newSearch() and stores with it, so a search starting does
+ *    not age the entries of a search still running.
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class TranspositionTable {
+	/** Bound type of an exact score. */
+	public static final int EXACT = 0;
+
+	/** Bound type of a score which is a lower bound (the search failed high). */
+	public static final int LOWER = 1;
+
+	/** Bound type of a score which is an upper bound (the search failed low). */
+	public static final int UPPER = 2;
+
+	/** Replacement policy: a new entry always replaces the old one. */
+	public static final int REPLACE_ALWAYS = 0;
+
+	/** Replacement policy: keep the deeper entry, unless the old one is from an earlier search. */
+	public static final int REPLACE_DEPTH = 1;
+
+	/** No best move. */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * An entry read from the table. A search reuses one entry for all its probes.
+	 */
+	public static class Entry {
+		/** The depth searched. */
+		public int depth;
+
+		/** EXACT, LOWER or UPPER. */
+		public int bound;
+
+		/** The cell index of the best move, or NO_MOVE. */
+		public int move;
+
+		/** The score. */
+		public double score;
+	}
+
+	/* Layout of an info word: depth (8 bits), bound (2 bits), move + 1 (8 bits), age (7 bits), used (1 bit). */
+	private static final int BOUND_SHIFT = 8, MOVE_SHIFT = 10, AGE_SHIFT = 18;
+	private static final long USED = 1L << 25;
+	private static final int AGE_MASK = 0x7F;
+
+	/* The number of longs of an entry. */
+	private static final int ENTRY_LONGS = 3;
+
+	/* The entries: check word, score bits, info word. */
+	private final long[] entries;
+
+	/* The number of entries - 1, the table size is a power of two. */
+	private final int mask;
+
+	/* The replacement policy. */
+	private final int policy;
+
+	/* The number of searches started, the age of a search is its number modulo AGE_MASK + 1. */
+	private final AtomicInteger searches = new AtomicInteger();
+
+	/**
+	 * Initialize a table.
+	 *
+	 * @param entries  the number of entries, rounded down to a power of two
+	 * @param policy   REPLACE_ALWAYS or REPLACE_DEPTH
+	 * @throws IllegalArgumentException  if the size or the policy is invalid
+	 */
+	public TranspositionTable(int entries, int policy) {
+		if(entries < 1)
+			throw new IllegalArgumentException("Table size must be positive: " + entries);
+		if(policy != REPLACE_ALWAYS && policy != REPLACE_DEPTH)
+			throw new IllegalArgumentException("Unknown replacement policy: " + policy);
+		int size = Integer.highestOneBit(entries);
+		this.entries = new long[size * ENTRY_LONGS];
+		mask = size - 1;
+		this.policy = policy;
+	}
+
+	/**
+	 * Get the number of entries of the table.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return mask + 1;
+	}
+
+	/**
+	 * Start a new search. Entries of other searches are replaced first.
+	 *
+	 * @return the age of the search, to store its entries with
+	 */
+	public int newSearch() {
+		return searches.incrementAndGet() & AGE_MASK;
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		Arrays.fill(entries, 0);
+	}
+
+	/**
+	 * Find the entry of a position.
+	 *
+	 * @param key    the hash of the position
+	 * @param entry  the entry to read the position into
+	 * @return       true if the position is in the table, otherwise false
+	 */
+	public boolean probe(long key, Entry entry) {
+		int i = ((int)key & mask) * ENTRY_LONGS;
+		long check = entries[i], score = entries[i+1], info = entries[i+2];
+		if((info & USED) == 0 || (check ^ score ^ info) != key)
+			return false;
+		entry.depth = (int)info & 0xFF;
+		entry.bound = (int)(info >>> BOUND_SHIFT) & 0x3;
+		entry.move = (int)((info >>> MOVE_SHIFT) & 0xFF) - 1;
+		entry.score = Double.longBitsToDouble(score);
+		return true;
+	}
+
+	/**
+	 * Store the result of a search, subject to the replacement policy.
+	 *
+	 * @param key    the hash of the position
+	 * @param depth  the depth searched
+	 * @param bound  EXACT, LOWER or UPPER
+	 * @param score  the score
+	 * @param move   the cell index of the best move, or NO_MOVE
+	 * @param age    the age of the search, from newSearch()
+	 */
+	public void store(long key, int depth, int bound, double score, int move, int age) {
+		int i = ((int)key & mask) * ENTRY_LONGS;
+		long check = entries[i], oldScore = entries[i+1], info = entries[i+2];
+		boolean sameKey = (info & USED) != 0 && (check ^ oldScore ^ info) == key;
+		if(policy == REPLACE_DEPTH && (info & USED) != 0 && !sameKey
+				&& ((info >>> AGE_SHIFT) & AGE_MASK) == age && (info & 0xFF) > depth)
+			return;
+		/* Keep the old best move if the new search did not find one. */
+		if(move == NO_MOVE && sameKey)
+			move = (int)((info >>> MOVE_SHIFT) & 0xFF) - 1;
+		long scoreBits = Double.doubleToLongBits(score);
+		long newInfo = Math.min(depth, 0xFF) | (long)bound << BOUND_SHIFT | (long)(move + 1) << MOVE_SHIFT
+				| (long)age << AGE_SHIFT | USED;
+		entries[i] = key ^ scoreBits ^ newInfo;
+		entries[i+1] = scoreBits;
+		entries[i+2] = newInfo;
+	}
+}
@@ -0,0 +1,215 @@
+package aiproj.sharwang;
+
+import aiproj.squatter.Piece;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  WeightTrainer:
+ *    Learns the weights of the evaluation function from the positions
+ *    written by SelfPlay, and writes them as a WeightsFile for SharWang to
+ *    read at init (-Dsharwang.weights=file).
+ *
+ *    The training files are memory-mapped and read in place. The positions
+ *    are split by round, the number of pieces on the board, as the weights
+ *    are: rounds below FIRST_ROUND count as FIRST_ROUND and rounds above
+ *    LAST_ROUND as LAST_ROUND. Each round is a least squares regression of
+ *    the result of the game, 1 for a white win, -1 for a black win and 0 for
+ *    a draw, on the capture, side and potential score differences of white,
+ *    solved by mini-batch gradient descent over several epochs. The rounds
+ *    are trained in parallel. training.py labels a black win 0 and a draw -1,
+ *    so its weights are not those of a symmetric evaluation.
+ *
+ *    Usage: java aiproj.sharwang.WeightTrainer weights epochs batch rate data...
+ *    e.g.   java aiproj.sharwang.WeightTrainer weights.txt 20 256 0.05 selfplay.bin
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public class WeightTrainer implements Piece {
+	/* The training files, mapped from index 0. */
+	private final List<ByteBuffer> files = new ArrayList<>();
+
+	/* The records of each round, as the file index in the high int and the record index in the low int. */
+	private long[][] rounds;
+
+	/* The mean squared error of the last epoch of each round, for reporting. */
+	private final double[] errors = new double[WeightsFile.ROUNDS];
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 5) {
+			System.err.println("Usage: java aiproj.sharwang.WeightTrainer weights epochs batch rate data...");
+			System.exit(1);
+		}
+		int epochs = Integer.parseInt(args[1]), batch = Integer.parseInt(args[2]);
+		double rate = Double.parseDouble(args[3]);
+		long start = System.nanoTime();
+		WeightTrainer trainer = new WeightTrainer();
+		for(int i = 4; i < args.length; i++)
+			trainer.map(args[i]);
+		trainer.index();
+		double[][] weights = trainer.train(epochs, Math.max(1, batch), rate,
+				Runtime.getRuntime().availableProcessors());
+		WeightsFile.write(Paths.get(args[0]), weights, "WeightTrainer " + epochs + " epochs, batch " + batch
+				+ ", rate " + rate + ", " + trainer.records() + " positions");
+		System.out.printf("%d positions in %.1f s%n", trainer.records(), (System.nanoTime() - start) / 1e9);
+		System.exit(0);
+	}
+
+	/* Map a training file. */
+	private void map(String path) throws IOException {
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			TrainingData.checkHeader(buffer);
+			files.add(buffer);
+		}
+	}
+
+	/* Split the records of the files by round. */
+	private void index() {
+		int[] counts = new int[WeightsFile.ROUNDS];
+		for(ByteBuffer buffer : files) {
+			int records = (int)TrainingData.records(buffer.limit());
+			for(int r = 0; r < records; r++)
+				counts[round(buffer, r)]++;
+		}
+		rounds = new long[WeightsFile.ROUNDS][];
+		for(int i = 0; i < rounds.length; i++)
+			rounds[i] = new long[counts[i]];
+		int[] filled = new int[WeightsFile.ROUNDS];
+		for(int f = 0; f < files.size(); f++) {
+			ByteBuffer buffer = files.get(f);
+			int records = (int)TrainingData.records(buffer.limit());
+			for(int r = 0; r < records; r++) {
+				int round = round(buffer, r);
+				rounds[round][filled[round]++] = (long)f << 32 | r;
+			}
+		}
+	}
+
+	/* The total number of records. */
+	private long records() {
+		long records = 0;
+		for(long[] round : rounds)
+			records += round.length;
+		return records;
+	}
+
+	/* The index in rounds of a record. */
+	private static int round(ByteBuffer buffer, int record) {
+		int ply = TrainingData.ply(buffer, record);
+		return Math.min(Math.max(ply, WeightsFile.FIRST_ROUND), WeightsFile.LAST_ROUND) - WeightsFile.FIRST_ROUND;
+	}
+
+	/* Train the rounds on a pool of threads, one round per task. A round without
+	   records keeps the built-in weights of SharWang. */
+	private double[][] train(final int epochs, final int batch, final double rate, int threads)
+			throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<Future<double[]>> results = new ArrayList<>();
+		for(int i = 0; i < WeightsFile.ROUNDS; i++) {
+			final int round = i;
+			results.add(pool.submit(new Callable<double[]>() {
+				public double[] call() {
+					if(rounds[round].length == 0)
+						return SharWang.DEFAULT_WEIGHTS[round].clone();
+					return trainRound(round, epochs, batch, rate);
+				}
+			}));
+		}
+		double[][] weights = new double[WeightsFile.ROUNDS][];
+		for(int i = 0; i < weights.length; i++) {
+			try {
+				weights[i] = results.get(i).get();
+			} catch(ExecutionException e) {
+				throw new IllegalStateException("Training failed", e.getCause());
+			}
+		}
+		pool.shutdown();
+		for(int i = 0; i < weights.length; i++) {
+			System.out.printf("round %d: %d positions, mean squared error %.4f, weights %.6f %.6f %.6f%n",
+					WeightsFile.FIRST_ROUND + i, rounds[i].length, errors[i], weights[i][0], weights[i][1],
+					weights[i][2]);
+		}
+		return weights;
+	}
+
+	/* Train the weights of one round. The features are scaled to a root mean
+	   square of 1 while training, so one rate suits every feature, and the
+	   weights are scaled back at the end. */
+	private double[] trainRound(int round, int epochs, int batch, double rate) {
+		long[] records = rounds[round].clone();
+		int n = records.length;
+		double[] x = new double[WeightsFile.WEIGHTS];
+		double[] scale = new double[WeightsFile.WEIGHTS];
+		for(long record : records) {
+			features(record, x);
+			for(int j = 0; j < x.length; j++)
+				scale[j] += x[j] * x[j];
+		}
+		for(int j = 0; j < scale.length; j++)
+			scale[j] = scale[j] == 0 ? 1 : Math.sqrt(scale[j] / n);
+		double[] w = new double[WeightsFile.WEIGHTS], gradient = new double[WeightsFile.WEIGHTS];
+		SplittableRandom random = new SplittableRandom(round);
+		double error = 0;
+		for(int epoch = 0; epoch < epochs; epoch++) {
+			/* Shuffle the records, then take a step for each batch. */
+			for(int i = n - 1; i > 0; i--) {
+				int k = random.nextInt(i + 1);
+				long t = records[i];
+				records[i] = records[k];
+				records[k] = t;
+			}
+			error = 0;
+			for(int from = 0; from < n; from += batch) {
+				int to = Math.min(n, from + batch);
+				Arrays.fill(gradient, 0);
+				for(int i = from; i < to; i++) {
+					double residual = -label(records[i]);
+					features(records[i], x);
+					for(int j = 0; j < x.length; j++) {
+						x[j] /= scale[j];
+						residual += w[j] * x[j];
+					}
+					for(int j = 0; j < x.length; j++)
+						gradient[j] += residual * x[j];
+					error += residual * residual;
+				}
+				for(int j = 0; j < w.length; j++)
+					w[j] -= rate * gradient[j] / (to - from);
+			}
+		}
+		for(int j = 0; j < w.length; j++)
+			w[j] /= scale[j];
+		errors[round] = error / n;
+		return w;
+	}
+
+	/* The capture, side and potential score differences of white of a record. */
+	private void features(long record, double[] x) {
+		ByteBuffer buffer = files.get((int)(record >>> 32));
+		int r = (int)record;
+		for(int j = 0; j < x.length; j++)
+			x[j] = TrainingData.score(buffer, r, 2 * j) - TrainingData.score(buffer, r, 2 * j + 1);
+	}
+
+	/* The result of the game of a record, from white. */
+	private double label(long record) {
+		int result = TrainingData.result(files.get((int)(record >>> 32)), (int)record);
+		return result == WHITE ? 1 : result == BLACK ? -1 : 0;
+	}
+}
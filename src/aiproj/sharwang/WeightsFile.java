@@ -0,0 +1,108 @@
+package aiproj.sharwang;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ *  WeightsFile:
+ *    Reads and writes the weights of the evaluation function, one line of
+ *    w1 w2 w3 for each round (the number of pieces on the board) from
+ *    FIRST_ROUND to LAST_ROUND, after a version line:
+ *
+ *      # comment
+ *      version 1
+ *      round 16 0.642656 -0.025575 0.007332
+ *      ...
+ *
+ *  Authors:
+ *      Rohan Sharma (rsharma1)
+ *      Shiyi Wang (sharwang)
+ */
+
+public final class WeightsFile {
+	/** The version of the file layout. */
+	public static final int VERSION = 1;
+
+	/** The first and the last round with weights of their own. */
+	public static final int FIRST_ROUND = 16, LAST_ROUND = 30;
+
+	/** The number of rounds of a file. */
+	public static final int ROUNDS = LAST_ROUND - FIRST_ROUND + 1;
+
+	/** The number of weights of a round. */
+	public static final int WEIGHTS = 3;
+
+	private WeightsFile() {
+	}
+
+	/**
+	 * Read a weights file.
+	 *
+	 * @param path  the file
+	 * @return      the weights of each round from FIRST_ROUND
+	 * @throws IOException  if the file can not be read, or is not a complete weights file
+	 */
+	public static double[][] read(Path path) throws IOException {
+		double[][] weights = new double[ROUNDS][];
+		boolean versioned = false;
+		try(BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = in.readLine()) != null) {
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("\\s+");
+				try {
+					if(fields[0].equals("version") && fields.length == 2) {
+						if(Integer.parseInt(fields[1]) != VERSION)
+							throw new IOException("Unsupported weights file version " + fields[1] + ": " + path);
+						versioned = true;
+					} else if(fields[0].equals("round") && fields.length == 2 + WEIGHTS && versioned) {
+						int round = Integer.parseInt(fields[1]);
+						if(round < FIRST_ROUND || round > LAST_ROUND)
+							throw new IOException("Round out of range in " + path + ": " + line);
+						double[] ws = new double[WEIGHTS];
+						for(int i = 0; i < WEIGHTS; i++)
+							ws[i] = Double.parseDouble(fields[2 + i]);
+						weights[round - FIRST_ROUND] = ws;
+					} else
+						throw new IOException("Invalid line in " + path + ": " + line);
+				} catch(NumberFormatException e) {
+					throw new IOException("Invalid number in " + path + ": " + line, e);
+				}
+			}
+		}
+		for(int i = 0; i < ROUNDS; i++) {
+			if(weights[i] == null)
+				throw new IOException("No weights of round " + (FIRST_ROUND + i) + " in " + path);
+		}
+		return weights;
+	}
+
+	/**
+	 * Write a weights file.
+	 *
+	 * @param path     the file
+	 * @param weights  the weights of each round from FIRST_ROUND
+	 * @param comment  a comment line written first, e.g. how the weights were made
+	 * @throws IOException  if the file can not be written
+	 */
+	public static void write(Path path, double[][] weights, String comment) throws IOException {
+		try(BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			out.write("# " + comment);
+			out.newLine();
+			out.write("version " + VERSION);
+			out.newLine();
+			for(int i = 0; i < ROUNDS; i++) {
+				out.write(String.format(Locale.ROOT, "round %d %.6f %.6f %.6f", FIRST_ROUND + i, weights[i][0],
+						weights[i][1], weights[i][2]));
+				out.newLine();
+			}
+		}
+	}
+}